@@ -0,0 +1,30 @@
+package scenarioGenerator;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so allocation rates are reported next to the
+ * timings. Accepts the usual JMH command line options, e.g. a regular expression selecting the
+ * benchmarks to run.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		Options options = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build();
+		Runner runner = new Runner(options);
+		if(commandLine.shouldHelp())
+			commandLine.showHelp();
+		else if(commandLine.shouldList())
+			runner.list();
+		else
+			runner.run();
+	}
+}
@@ -0,0 +1,60 @@
+package scenarioGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end generation of a scenario for each critical task used by Main at each
+ * difficulty level and in each setting used by Main, so all combinations Main generates are
+ * covered; the setting decides which objects fit and so which implementations are searched.
+ * Every call uses a new seed, so the benchmark covers the variation between scenarios rather
+ * than a single generation path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+	@Param({"SO_ontology.xml"})
+	public String domain;
+
+	@Param({"calm_person", "treat_burn", "ensure_ABC"})
+	public String criticalTask;
+
+	@Param({"1", "2"})
+	public int difficulty;
+
+	@Param({"Park", "Home", "Restaurant", "Laboratorium"})
+	public String setting;
+
+	private ScenarioGenerator _generator;
+	private long _seed;
+
+	@Setup
+	public void setup(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		if(!parser.parseDomain(domain))
+			throw new IllegalStateException("Could not parse "+domain);
+		_generator = new ScenarioGenerator(parser);
+		_seed = 0;
+	}
+
+	@Benchmark
+	public String generate(){
+		return _generator.generate(new ScenarioRequest("basic", criticalTask, difficulty, setting, _seed++));
+	}
+}
@@ -0,0 +1,70 @@
+package scenarioGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading the domain: parsing the xml with the DOM and the StAX parser, and loading
+ * the binary snapshot of the same domain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"SO_ontology.xml"})
+	public String domain;
+
+	private File _snapshot;
+
+	@Setup
+	public void setup() throws IOException {
+		_snapshot = File.createTempFile("domain", ".snapshot");
+		_snapshot.delete();
+		if(!DomainSnapshot.loadDomain(new ProtegeDomainParser(), domain, _snapshot.getPath()))
+			throw new IllegalStateException("Could not parse "+domain);
+	}
+
+	@TearDown
+	public void tearDown(){
+		_snapshot.delete();
+	}
+
+	@Benchmark
+	public ProtegeDomainParser parseDom(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		parser.parseDomain(domain);
+		return parser;
+	}
+
+	@Benchmark
+	public ProtegeDomainParser parseStax(){
+		ProtegeDomainParser parser = new StreamingProtegeDomainParser();
+		parser.parseDomain(domain);
+		return parser;
+	}
+
+	@Benchmark
+	public ProtegeDomainParser loadSnapshot(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		DomainSnapshot.loadDomain(parser, domain, _snapshot.getPath());
+		return parser;
+	}
+}
@@ -0,0 +1,79 @@
+package scenarioGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the SmartObjectSelector for representative Services. fillService starts from a
+ * scenario that only contains the template, couldServiceBeOffered from a generated scenario.
+ * Changes made by fillService are rolled back before every call, couldServiceBeOffered marks
+ * the scenario as changed before every call so its results are not answered from the memo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark {
+
+	@Param({"SO_ontology.xml"})
+	public String domain;
+
+	@Param({"danger", "panic", "thermal_burn", "water"})
+	public String service;
+
+	@Param({"1", "2"})
+	public int difficulty;
+
+	private String _serviceId;
+	private String _setting;
+	private TimeLine _template;
+	private SmartObjectSelector _templateSelector;
+	private TimeLine _scenario;
+	private SmartObjectSelector _scenarioSelector;
+
+	@Setup
+	public void setup(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		if(!parser.parseDomain(domain))
+			throw new IllegalStateException("Could not parse "+domain);
+		for(ServiceImplementation si : parser.getAllServiceImplementations()){
+			if(parser.getServiceById(si.service()).name().equalsIgnoreCase(service))
+				_serviceId = si.service();
+		}
+		if(_serviceId == null)
+			throw new IllegalStateException("No implementations of "+service);
+		_setting = parser.getSettingByName("Home");
+
+		_template = new TimeLine(parser, new ScenarioContext(1));
+		_template.addTemplate(parser.getScenarioTemplateByName("basic"));
+		_templateSelector = new SmartObjectSelector(_template, parser);
+
+		_scenario = new ScenarioGenerator(parser).generateTimeLine(new ScenarioRequest("basic", "treat_burn", difficulty, "Home", 1));
+		_scenarioSelector = new SmartObjectSelector(_scenario, parser);
+	}
+
+	@Benchmark
+	public SmartObject fillService(){
+		// the clone is rolled back by the next call
+		return _templateSelector.fillService(_template.clone(), _serviceId, difficulty, _setting);
+	}
+
+	@Benchmark
+	public MultiValueTreeMap<String, ServiceImplementation> couldServiceBeOffered(){
+		_scenario.context().changed();
+		return _scenarioSelector.couldServiceBeOffered(_scenario, _serviceId, _setting, difficulty);
+	}
+}
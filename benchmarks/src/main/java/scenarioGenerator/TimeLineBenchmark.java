@@ -0,0 +1,72 @@
+package scenarioGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the backtracking support of the TimeLine on a fully generated scenario: taking a
+ * checkpoint, changing the clone and either merging it back or rolling it back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeLineBenchmark {
+
+	@Param({"SO_ontology.xml"})
+	public String domain;
+
+	@Param({"calm_person", "treat_burn", "ensure_ABC"})
+	public String criticalTask;
+
+	private TimeLine _timeLine;
+	private SmartObject _object;
+
+	@Setup
+	public void setup(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		if(!parser.parseDomain(domain))
+			throw new IllegalStateException("Could not parse "+domain);
+		ScenarioGenerator generator = new ScenarioGenerator(parser);
+		_timeLine = generator.generateTimeLine(new ScenarioRequest("basic", criticalTask, 2, "Home", 1));
+		// any concrete object will do, the benchmarks only add it to the clones
+		ServiceImplementation si = parser.getAllServiceImplementations().get(0);
+		SmartObjectSelector selector = new SmartObjectSelector(_timeLine, parser);
+		_object = _timeLine.createObject(selector.findBestObject(parser.getSmartObjById(si.objectId()), parser.getSettingByName("Home")));
+	}
+
+	/**
+	 * Checkpoint, change and merge one level deep, then roll back to the generated scenario
+	 */
+	@Benchmark
+	public boolean cloneMergeRollback(){
+		TimeLine outer = _timeLine.clone();
+		TimeLine inner = outer.clone();
+		inner.addNewObject(_object, false);
+		outer.merge(inner);
+		return _timeLine.containsObject(_object.id());
+	}
+
+	/**
+	 * Checkpoint and change, then roll back to the generated scenario
+	 */
+	@Benchmark
+	public boolean cloneRollback(){
+		TimeLine clone = _timeLine.clone();
+		clone.addNewObject(_object, false);
+		return _timeLine.containsObject(_object.id());
+	}
+}
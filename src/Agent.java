@@ -5,8 +5,8 @@ package scenarioGenerator;
  */
 public class Agent extends SmartObject{
 
-	public Agent(AgentDescription ad) {
-		super(ad);
+	public Agent(int id, AgentDescription ad) {
+		super(id, ad);
 	}
 	
 	public AgentDescription getAgentDesc(){
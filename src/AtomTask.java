@@ -6,8 +6,8 @@ package scenarioGenerator;
  */
 public class AtomTask extends Task{
 
-	public AtomTask(AtomTaskDescription a){
-		super(a);
+	public AtomTask(int id, AtomTaskDescription a){
+		super(id, a);
 	}
 	
 	/**
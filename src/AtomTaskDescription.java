@@ -1,20 +1,21 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Stores the domain knowledge regarding a specific instance of the AtomTask concept.
  */
 public class AtomTaskDescription extends TaskDescription{
 	
-	private ArrayList<String> _serviceIds;
+	private List<String> _serviceIds;
 
 	public AtomTaskDescription(String id, String name, ArrayList<String> serviceIds) {
 		super(id, name, new ArrayList<String>(), serviceIds);
-		_serviceIds = serviceIds;
+		_serviceIds = immutable(serviceIds);
 	}
 
-	public ArrayList<String> getRequiredServiceIds(){
+	public List<String> getRequiredServiceIds(){
 		return _serviceIds;
 	}
 
@@ -0,0 +1,142 @@
+package scenarioGenerator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates batches of scenarios on a pool of worker threads. All workers share the same
+ * ScenarioGenerator (and therefore the same read-only parsed domain). The results are returned
+ * in the order of the requests, independent of the order in which they were finished.
+ */
+public class BatchGenerator {
+
+	private ScenarioGenerator _generator;
+	private ExecutorService _pool;
+	private int _threads;
+
+	/**
+	 * @param generator used by all workers
+	 * @param threads number of worker threads
+	 */
+	public BatchGenerator(ScenarioGenerator generator, int threads){
+		_generator = generator;
+		_threads = Math.max(1, threads);
+		_pool = Executors.newFixedThreadPool(_threads);
+	}
+
+	/**
+	 * Generates a scenario for every request and hands them to the writer in the order of the
+	 * requests as soon as they are available. At most two scenarios per worker thread are
+	 * generated ahead of the writer, so memory use does not grow with the size of the batch.
+	 * Requests that fail do not stop the batch, see generate(List, ScenarioWriter, List).
+	 * @param requests
+	 * @param out
+	 * @return number of requests for which no complete scenario could be generated
+	 * @throws IOException if writing fails
+	 */
+	public int generate(List<ScenarioRequest> requests, ScenarioWriter out) throws IOException{
+		return generate(requests, out, Collections.<ScenarioExporter>emptyList());
+	}
+
+	/**
+	 * Generates a scenario for every request and hands them to the writer and all exporters in
+	 * the order of the requests as soon as they are available. At most two scenarios per worker
+	 * thread are generated ahead of the writer, so memory use does not grow with the size of the
+	 * batch. A request that fails does not stop the batch: if it exceeded its deadline or search
+	 * budget the partial scenario is written, marked as incomplete, otherwise the reason of the
+	 * failure is written in place of the scenario. Failed requests are not exported.
+	 * @param requests
+	 * @param out
+	 * @param exporters
+	 * @return number of requests for which no complete scenario could be generated
+	 * @throws IOException if writing fails
+	 */
+	public int generate(List<ScenarioRequest> requests, ScenarioWriter out, List<ScenarioExporter> exporters) throws IOException{
+		int window = _threads * 2;
+		ArrayDeque<Future<TimeLine>> futures = new ArrayDeque<Future<TimeLine>>(window);
+		int next = 0;
+		int done = 0;
+		int failed = 0;
+		StringBuilder scenario = new StringBuilder();
+		try {
+			while(next < requests.size() || !futures.isEmpty()){
+				while(next < requests.size() && futures.size() < window){
+					futures.add(submitTimeLine(requests.get(next++)));
+				}
+				ScenarioRequest request = requests.get(done++);
+				scenario.setLength(0);
+				try {
+					TimeLine timeLine = futures.peek().get();
+					_generator.print(request, timeLine, scenario);
+					out.write(scenario.toString());
+					for(ScenarioExporter exporter : exporters){
+						_generator.export(request, timeLine, exporter);
+					}
+				} catch (ExecutionException e) {
+					failed++;
+					printFailure(request, e.getCause(), scenario);
+					out.write(scenario.toString());
+				}
+				futures.poll();
+			}
+		} catch (InterruptedException e) {
+			cancel(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating scenarios", e);
+		} catch (IOException e) {
+			cancel(futures);
+			throw e;
+		}
+		return failed;
+	}
+
+	/**
+	 * Helper function that writes what is left of a scenario whose generation failed
+	 * @param request
+	 * @param cause of the failure
+	 * @param out
+	 * @throws IOException if writing fails
+	 */
+	private void printFailure(ScenarioRequest request, Throwable cause, StringBuilder out) throws IOException {
+		if(cause instanceof ScenarioLimitException && ((ScenarioLimitException) cause).partialScenario() != null){
+			out.append("Incomplete scenario: ").append(cause.getMessage()).append("\r\n");
+			_generator.print(request, ((ScenarioLimitException) cause).partialScenario(), out);
+			return;
+		}
+		System.err.println("Could not generate scenario for "+request.criticalTask()+" in "+request.setting()+" with seed "+request.seed()+": "+cause);
+		out.append("Could not generate scenario: ").append(String.valueOf(cause.getMessage())).append("\r\n");
+		out.append("Task to train: ").append(request.criticalTask()).append(" in the ").append(request.setting());
+		out.append(" at level: ").append(Integer.toString(request.difficulty())).append("\r\n");
+		out.append("Seed: ").append(Long.toString(request.seed())).append("\r\n");
+		out.append("\r\n -------------------------------------------------- \r\n");
+	}
+
+	/**
+	 * Stops the worker threads once all submitted scenarios have been generated
+	 */
+	public void shutdown(){
+		_pool.shutdown();
+	}
+
+	private Future<TimeLine> submitTimeLine(final ScenarioRequest request){
+		return _pool.submit(new Callable<TimeLine>(){
+			public TimeLine call(){
+				return _generator.generateTimeLine(request);
+			}
+		});
+	}
+
+	private void cancel(Collection<? extends Future<?>> futures){
+		for(Future<?> future : futures){
+			future.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package scenarioGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Writes scenarios in a compact binary format. The stream starts with the int MAGIC and the int
+ * VERSION, followed by one record per scenario: the length of the record as varint and the record
+ * itself. Integers in a record are varints, strings are the varint length of their UTF-8 bytes
+ * followed by the bytes. A record starts with the template, critical task, setting, difficulty
+ * and seed (8 bytes) of the request, followed by tagged items and the END tag:
+ * <ul>
+ * <li>PLANNING: task id, description id, name, used objects</li>
+ * <li>STORY: task id, description id, name, actor (object or 0), goal Service id ("" if none),
+ * used objects</li>
+ * <li>INIT_OBJECT, DYNAMIC_OBJECT: object</li>
+ * <li>SERVICE: Service id, object, difficulty</li>
+ * </ul>
+ * An object is its id + 1, description id and name. Used objects are a count followed by an
+ * object and Service id per object. Only the record of the current scenario is buffered.
+ */
+public class BinaryScenarioExporter implements ScenarioExporter {
+
+	public static final int MAGIC = 0x53474353;
+	public static final int VERSION = 1;
+
+	public static final int END = 0;
+	public static final int PLANNING = 1;
+	public static final int STORY = 2;
+	public static final int INIT_OBJECT = 3;
+	public static final int DYNAMIC_OBJECT = 4;
+	public static final int SERVICE = 5;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private DataOutputStream _out;
+	private ByteArrayOutputStream _record;
+	private ByteArrayOutputStream _length;
+
+	/**
+	 * @param out to write the scenarios to, should be buffered
+	 * @throws IOException
+	 */
+	public BinaryScenarioExporter(OutputStream out) throws IOException {
+		_out = new DataOutputStream(out);
+		_record = new ByteArrayOutputStream();
+		_length = new ByteArrayOutputStream(5);
+		_out.writeInt(MAGIC);
+		_out.writeInt(VERSION);
+	}
+
+	public void beginScenario(ScenarioRequest request) throws IOException {
+		_record.reset();
+		writeString(request.template());
+		writeString(request.criticalTask());
+		writeString(request.setting());
+		writeVarInt(request.difficulty());
+		long seed = request.seed();
+		for(int shift=56; shift>=0; shift-=8){
+			_record.write((int) (seed >>> shift));
+		}
+	}
+
+	public void planningTask(Task task, List<SmartObject> objects, List<Service> services) throws IOException {
+		writeVarInt(PLANNING);
+		writeVarInt(task.id());
+		writeString(task.taskDesc().id());
+		writeString(task.taskDesc().name());
+		writeUsedObjects(objects, services);
+	}
+
+	public void storyAction(AtomTask action, Agent actor, Service goal, List<SmartObject> objects, List<Service> services) throws IOException {
+		writeVarInt(STORY);
+		writeVarInt(action.id());
+		writeString(action.actionDesc().id());
+		writeString(action.actionDesc().name());
+		writeObject(actor);
+		writeString(goal != null ? goal.id() : "");
+		writeUsedObjects(objects, services);
+	}
+
+	public void initObject(SmartObject object) throws IOException {
+		writeVarInt(INIT_OBJECT);
+		writeObject(object);
+	}
+
+	public void dynamicObject(SmartObject object) throws IOException {
+		writeVarInt(DYNAMIC_OBJECT);
+		writeObject(object);
+	}
+
+	public void offeredService(Service service, SmartObject object, int difficulty) throws IOException {
+		writeVarInt(SERVICE);
+		writeString(service.id());
+		writeObject(object);
+		writeVarInt(difficulty);
+	}
+
+	public void endScenario() throws IOException {
+		writeVarInt(END);
+		_length.reset();
+		VarInt.write(_length, _record.size());
+		_length.writeTo(_out);
+		_record.writeTo(_out);
+	}
+
+	public void close() throws IOException {
+		_out.close();
+	}
+
+	private void writeUsedObjects(List<SmartObject> objects, List<Service> services){
+		writeVarInt(objects.size());
+		for(int i=0; i<objects.size(); i++){
+			writeObject(objects.get(i));
+			writeString(services.get(i).id());
+		}
+	}
+
+	private void writeObject(SmartObject object){
+		if(object == null){
+			writeVarInt(0);
+			return;
+		}
+		writeVarInt(object.id() + 1);
+		writeString(object.objDesc().id());
+		writeString(object.objDesc().name());
+	}
+
+	private void writeString(String s){
+		byte[] bytes = s.getBytes(UTF8);
+		writeVarInt(bytes.length);
+		_record.write(bytes, 0, bytes.length);
+	}
+
+	private void writeVarInt(int value){
+		VarInt.write(_record, value);
+	}
+}
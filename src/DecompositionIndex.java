@@ -0,0 +1,98 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Reverse index of the task decomposition graph. For every task it stores the
+ * DecompositionSchemas that have the task as one of their subtasks and, as a bitset, all tasks
+ * that can be reached from the task by applying DecompositionSchemas. Built once after the domain
+ * has been parsed; cycles and shared subtasks in the decomposition graph are visited only once.
+ */
+class DecompositionIndex {
+
+	private TreeMap<String, Integer> _index;
+	private ArrayList<List<DecompositionSchema>> _producers;
+	private BitSet[] _reachable;
+
+	public DecompositionIndex(Collection<TaskDescription> tasks, DomainParser parser){
+		_index = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+		int next = 0;
+		for(TaskDescription task : tasks){
+			if(!_index.containsKey(task.id()))
+				_index.put(task.id(), next++);
+		}
+		// collect the schemas producing every task and the direct subtasks of every task
+		ArrayList<ArrayList<DecompositionSchema>> producers = new ArrayList<ArrayList<DecompositionSchema>>(next);
+		BitSet[] subtasks = new BitSet[next];
+		for(int i=0; i<next; i++){
+			producers.add(new ArrayList<DecompositionSchema>());
+			subtasks[i] = new BitSet(next);
+		}
+		for(TaskDescription task : tasks){
+			int parent = _index.get(task.id());
+			for(String decompId : task.getAllTaskDecompositions()){
+				DecompositionSchema schema = parser.getDecompSchemaById(decompId);
+				if(schema == null)
+					continue;
+				for(String subtaskId : schema.getDecomposition()){
+					Integer child = _index.get(subtaskId);
+					if(child == null)
+						continue;
+					subtasks[parent].set(child);
+					if(!producers.get(child).contains(schema))
+						producers.get(child).add(schema);
+				}
+			}
+		}
+		_producers = new ArrayList<List<DecompositionSchema>>(next);
+		for(ArrayList<DecompositionSchema> schemas : producers){
+			_producers.add(Collections.unmodifiableList(schemas));
+		}
+		// transitive closure, the bitset doubles as visited set
+		_reachable = new BitSet[next];
+		for(int i=0; i<next; i++){
+			BitSet reachable = new BitSet(next);
+			ArrayList<Integer> open = new ArrayList<Integer>();
+			open.add(i);
+			while(!open.isEmpty()){
+				BitSet children = subtasks[open.remove(open.size()-1)];
+				for(int c=children.nextSetBit(0); c>=0; c=children.nextSetBit(c+1)){
+					if(!reachable.get(c)){
+						reachable.set(c);
+						open.add(c);
+					}
+				}
+			}
+			_reachable[i] = reachable;
+		}
+	}
+
+	/**
+	 * @param taskId
+	 * @return the DecompositionSchemas that have the task as subtask
+	 */
+	public List<DecompositionSchema> producers(String taskId){
+		Integer task = _index.get(taskId);
+		if(task == null)
+			return Collections.emptyList();
+		return _producers.get(task);
+	}
+
+	/**
+	 * @param fromTaskId
+	 * @param toTaskId
+	 * @return true if the second task can be reached by (repeatedly) decomposing the first task
+	 */
+	public boolean isReachable(String fromTaskId, String toTaskId){
+		Integer from = _index.get(fromTaskId);
+		Integer to = _index.get(toTaskId);
+		if(from == null || to == null)
+			return false;
+		return _reachable[from].get(to);
+	}
+}
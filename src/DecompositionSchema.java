@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a decomposition schema or HTN method that can be applied to decompose a high level
@@ -8,9 +9,9 @@ import java.util.ArrayList;
  */
 public class DecompositionSchema extends DomainConcept {
 
-	private ArrayList<String> _decomposition;
-	private ArrayList<String> _precond_services;
-	private ArrayList<String> _precond_objects;
+	private List<String> _decomposition;
+	private List<String> _precond_services;
+	private List<String> _precond_objects;
 	private String _taskId;
 	private int _minDifficutly;
 	private int _maxDifficulty;
@@ -18,9 +19,9 @@ public class DecompositionSchema extends DomainConcept {
 	public DecompositionSchema(String id, String name, String taskId, ArrayList<String> decomposition, ArrayList<String> preServiceIds, ArrayList<String> preObjectIds, int minDif, int maxDif) {
 		super(id, name);
 		_taskId = taskId;
-		_decomposition = decomposition;
-		_precond_services = preServiceIds;
-		_precond_objects = preObjectIds;
+		_decomposition = immutable(decomposition);
+		_precond_services = immutable(preServiceIds);
+		_precond_objects = immutable(preObjectIds);
 		_minDifficutly = minDif;
 		_maxDifficulty = maxDif;
 	}
@@ -28,12 +29,8 @@ public class DecompositionSchema extends DomainConcept {
 	/**
 	 * @return subtasks into which the task is decomposed
 	 */
-	public ArrayList<String> getDecomposition(){
-		ArrayList<String> copy = new ArrayList<String>();
-		for(String t : _decomposition){
-			copy.add(t);
-		}
-		return copy;
+	public List<String> getDecomposition(){
+		return _decomposition;
 	}
 	
 	/**
@@ -46,23 +43,15 @@ public class DecompositionSchema extends DomainConcept {
 	/**
 	 * @return services that are required before this schema can be applied
 	 */
-	public ArrayList<String> getAllServicePreconds(){
-		ArrayList<String> copy = new ArrayList<String>();
-		for(String t : _precond_services){
-			copy.add(t);
-		}
-		return copy;
+	public List<String> getAllServicePreconds(){
+		return _precond_services;
 	}
 	
 	/**
 	 * @return objects that are required before this schema can be applied
 	 */
-	public ArrayList<String> getAllObjectPreconds(){
-		ArrayList<String> copy = new ArrayList<String>();
-		for(String t : _precond_objects){
-			copy.add(t);
-		}
-		return copy;
+	public List<String> getAllObjectPreconds(){
+		return _precond_objects;
 	}
 	
 	/**
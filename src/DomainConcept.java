@@ -1,5 +1,9 @@
 package scenarioGenerator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * General class that encompasses all concepts parsed from the domain knowledge. All concepts have
  * a name and an id and can be compared based on these properties.
@@ -22,6 +26,19 @@ public abstract class DomainConcept {
 		return _id;
 	}
 	
+	/**
+	 * Helper function for the subclasses to store a list of ids parsed from the domain. Concepts
+	 * are shared by all scenarios, so their accessors hand out this read-only copy instead of
+	 * copying the list on every call.
+	 * @param ids
+	 * @return unmodifiable copy of the ids
+	 */
+	protected static List<String> immutable(ArrayList<String> ids){
+		if(ids == null || ids.isEmpty())
+			return Collections.emptyList();
+		return Collections.unmodifiableList(new ArrayList<String>(ids));
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if(o instanceof DomainConcept){
@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Interface describing the functionalities a domain parser should offer.
@@ -41,9 +42,9 @@ interface DomainParser {
 	 * @param smartObjId id of the SmartObjectDescription
 	 * @param serviceId, id of the Service that this SmartObject offers
 	 * @return references to the ServiceImplementations that detail how the inputted Service is 
-	 * offered by this SmartObject
+	 * offered by this SmartObject, the list is shared and cannot be modified
 	 */
-	public ArrayList<ServiceImplementation> getServiceImplByObj(String smartObjId, String serviceId);
+	public List<ServiceImplementation> getServiceImplByObj(String smartObjId, String serviceId);
 	
 	/**
 	 * @param id, of DecompositionSchema
@@ -80,6 +81,19 @@ interface DomainParser {
 	 */
 	public Service getServiceById(String id);
 
+	/**
+	 * @param id of the Service
+	 * @return the symbol of the Service, a small non negative int that identifies it in the
+	 * domain, -1 if there is no Service with this id
+	 */
+	public int getServiceSymbol(String id);
+
+	/**
+	 * @param symbol of the Service, see getServiceSymbol
+	 * @return reference to the Service, null if there is no Service with this symbol
+	 */
+	public Service getServiceBySymbol(int symbol);
+
 	/**
 	 * @param id of the Setting
 	 * @return name of the Setting
@@ -88,9 +102,9 @@ interface DomainParser {
 	
 	/**
 	 * @param actorType, type of the agent
-	 * @return reference to AgentDescriptions that have this type
+	 * @return reference to AgentDescriptions that have this type, or inherit it
 	 */
-	public ArrayList<AgentDescription> getAgentDescByType(String actorType);
+	public List<AgentDescription> getAgentDescByType(String actorType);
 	
 	/**
 	 * @param parent Service that is thought to be the parent of the child
@@ -99,6 +113,48 @@ interface DomainParser {
 	 */
 	public boolean isServiceChild(Service parent, String childId);
 	
+	/**
+	 * @param serviceId id of the Service
+	 * @return ids of all Services from which the Service (indirectly) inherits, ordered by id
+	 */
+	public List<String> getServiceAncestors(String serviceId);
+	
+	/**
+	 * @param taskId id of the task
+	 * @return all DecompositionSchemas that have the task as one of their subtasks
+	 */
+	public List<DecompositionSchema> getProducingDecompositions(String taskId);
+	
+	/**
+	 * @param fromTaskId id of the task that is decomposed
+	 * @param toTaskId id of the task that is looked for
+	 * @return true if the second task can be reached by (repeatedly) decomposing the first task
+	 */
+	public boolean isTaskReachable(String fromTaskId, String toTaskId);
+	
+	/**
+	 * @param taskId id of the task
+	 * @param difficulty level desired for the scenario
+	 * @return the DecompositionSchemas of the task grouped by how closely they approximate the
+	 * difficulty, best group first
+	 */
+	public List<List<DecompositionSchema>> getDecompositionsByScore(String taskId, int difficulty);
+	
+	/**
+	 * @param smartObjId id of the SmartObject (type) description
+	 * @param setting id of the Setting
+	 * @return how well the object, or the best fitting object inheriting from the type, fits in the
+	 * Setting: 1 expected, 0 neutral, -1 unexpected, Integer.MIN_VALUE if there is no such object
+	 */
+	public int getSettingFit(String smartObjId, String setting);
+	
+	/**
+	 * @param typeId id of the SmartObjectTypeDescription
+	 * @param setting id of the Setting
+	 * @return the children of the type that fit best in the Setting
+	 */
+	public List<AbstractSmartObjectDescription> getBestFittingChildren(String typeId, String setting);
+	
 	/**
 	 * @param obj 
 	 * @param actorType
@@ -0,0 +1,259 @@
+package scenarioGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Compact binary snapshot of a parsed Protege domain. The snapshot stores every simple instance
+ * (its type, id and slot values) as it was handed to ProtegeDomainParser.parseInstance, so
+ * loading it rebuilds exactly the same descriptions without reading any xml. All strings are
+ * stored once in a string table and referred to by index. The snapshot records a hash of the
+ * xml file it was made from and is only used while that file is unchanged. The snapshot holds
+ * the raw instances, not the finished descriptions and indexes: loading it still runs
+ * parseInstance for every instance and finishParsing, so it only saves reading and tokenizing
+ * the xml.
+ *
+ * Layout: magic, version, source hash, string table, instance records. Numbers are written as
+ * variable length integers, strings as UTF-8 preceded by their length.
+ */
+public class DomainSnapshot {
+
+	public static final int MAGIC = 0x53474453;
+	public static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private HashMap<String, Integer> _stringIndex;
+	private ArrayList<String> _strings;
+	private ByteArrayOutputStream _records;
+	private int _recordCount;
+
+	public DomainSnapshot(){
+		_stringIndex = new HashMap<String, Integer>();
+		_strings = new ArrayList<String>();
+		_records = new ByteArrayOutputStream();
+		_recordCount = 0;
+	}
+
+	/**
+	 * Fills the parser with the domain described by the xml file. If the snapshot file was made
+	 * from the same xml file the domain is loaded from the snapshot, otherwise the xml file is
+	 * parsed and a new snapshot is written.
+	 * @param parser empty parser to fill
+	 * @param xmlFile domain knowledge file name
+	 * @param snapshotFile snapshot file name
+	 * @return true if the domain was successfully loaded, false otherwise
+	 */
+	public static boolean loadDomain(ProtegeDomainParser parser, String xmlFile, String snapshotFile){
+		byte[] hash;
+		try {
+			hash = hashFile(new File(xmlFile));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+		File snapshot = new File(snapshotFile);
+		if(snapshot.isFile()){
+			try {
+				if(read(snapshot, hash, parser))
+					return true;
+			} catch (Exception e) {
+				System.err.println("Could not read domain snapshot "+snapshotFile+", parsing "+xmlFile);
+			}
+		}
+		// snapshot missing or stale
+		DomainSnapshot recorder = new DomainSnapshot();
+		parser.setSnapshot(recorder);
+		boolean parsed = parser.parseDomain(xmlFile);
+		parser.setSnapshot(null);
+		if(parsed){
+			try {
+				recorder.write(snapshot, hash);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Records a simple instance of the domain
+	 * @param type of the instance
+	 * @param id of the instance
+	 * @param instanceSlots values of all slots of the instance
+	 */
+	public void addInstance(String type, String id, TreeMap<String, ArrayList<String>> instanceSlots){
+		VarInt.write(_records, indexOf(type));
+		VarInt.write(_records, indexOf(id));
+		VarInt.write(_records, instanceSlots.size());
+		for(String slotName : instanceSlots.keySet()){
+			ArrayList<String> values = instanceSlots.get(slotName);
+			VarInt.write(_records, indexOf(slotName));
+			VarInt.write(_records, values.size());
+			for(String value : values){
+				VarInt.write(_records, indexOf(value));
+			}
+		}
+		_recordCount++;
+	}
+
+	/**
+	 * Writes all recorded instances to the specified file
+	 * @param file
+	 * @param hash of the xml file the instances were parsed from
+	 * @throws IOException
+	 */
+	public void write(File file, byte[] hash) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		VarInt.write(header, hash.length);
+		header.write(hash);
+		VarInt.write(header, _strings.size());
+		for(String s : _strings){
+			byte[] bytes = s.getBytes(UTF8);
+			VarInt.write(header, bytes.length);
+			header.write(bytes);
+		}
+		VarInt.write(header, _recordCount);
+		// write to a temporary file first so a failed write never leaves a corrupt snapshot
+		File temp = new File(file.getPath()+".tmp");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			header.writeTo(out);
+			_records.writeTo(out);
+		} finally {
+			out.close();
+		}
+		if(file.exists() && !file.delete())
+			throw new IOException("Could not replace "+file);
+		if(!temp.renameTo(file))
+			throw new IOException("Could not write "+file);
+	}
+
+	/**
+	 * Loads the instances stored in the snapshot into the parser. The whole snapshot is decoded
+	 * before the first instance is passed to the parser, so a corrupt snapshot leaves the parser
+	 * empty.
+	 * @param file snapshot file
+	 * @param hash of the current xml file
+	 * @param parser empty parser to fill
+	 * @return true if the snapshot was loaded, false if it is stale or of another version
+	 * @throws IOException if the snapshot is corrupt
+	 */
+	public static boolean read(File file, byte[] hash, ProtegeDomainParser parser) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(in.getInt() != MAGIC || in.getInt() != VERSION)
+				return false;
+			byte[] stored = new byte[readLength(in, 1)];
+			in.get(stored);
+			if(!Arrays.equals(stored, hash))
+				return false;
+			String[] strings = new String[readLength(in, 1)];
+			for(int i=0; i<strings.length; i++){
+				byte[] bytes = new byte[readLength(in, 1)];
+				in.get(bytes);
+				strings[i] = new String(bytes, UTF8);
+			}
+			// every record holds at least its type, id and number of slots
+			int records = readLength(in, 3);
+			ArrayList<String> types = new ArrayList<String>();
+			ArrayList<String> ids = new ArrayList<String>();
+			ArrayList<TreeMap<String, ArrayList<String>>> slotMaps = new ArrayList<TreeMap<String, ArrayList<String>>>();
+			for(int r=0; r<records; r++){
+				String type = strings[VarInt.read(in)];
+				String id = strings[VarInt.read(in)];
+				TreeMap<String, ArrayList<String>> instanceSlots = new TreeMap<String, ArrayList<String>>(String.CASE_INSENSITIVE_ORDER);
+				int slots = readLength(in, 2);
+				for(int s=0; s<slots; s++){
+					String slotName = strings[VarInt.read(in)];
+					int count = readLength(in, 1);
+					ArrayList<String> values = new ArrayList<String>(count);
+					for(int v=0; v<count; v++){
+						values.add(strings[VarInt.read(in)]);
+					}
+					instanceSlots.put(slotName, values);
+				}
+				types.add(type);
+				ids.add(id);
+				slotMaps.add(instanceSlots);
+			}
+			for(int r=0; r<records; r++){
+				parser.parseInstance(types.get(r), ids.get(r), slotMaps.get(r));
+			}
+			parser.finishParsing();
+			return true;
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt domain snapshot "+file, e);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Helper function for read that reads a length or count and checks it against the bytes left,
+	 * so a corrupt snapshot cannot cause a huge allocation
+	 * @param in
+	 * @param minBytes number of bytes every counted item takes at least
+	 * @return the length or count
+	 * @throws IOException if the snapshot does not hold enough bytes for the items
+	 */
+	private static int readLength(ByteBuffer in, int minBytes) throws IOException {
+		int length = VarInt.read(in);
+		if(length < 0 || (long) length * minBytes > in.remaining())
+			throw new IOException("Corrupt domain snapshot, length "+length+" exceeds the "+in.remaining()+" bytes left");
+		return length;
+	}
+
+	/**
+	 * @param file
+	 * @return SHA-256 hash of the contents of the file
+	 * @throws Exception
+	 */
+	public static byte[] hashFile(File file) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) > 0){
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Helper function that adds the string to the string table if required
+	 * @param s
+	 * @return index of the string in the string table
+	 */
+	private int indexOf(String s){
+		Integer index = _stringIndex.get(s);
+		if(index == null){
+			index = _strings.size();
+			_strings.add(s);
+			_stringIndex.put(s, index);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,60 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Symbol table that interns the ids of the concepts in the domain to dense integers (in the
+ * order in which they were first seen), so the parser can store its concepts in arrays indexed by
+ * symbol. Filled while parsing, only read afterwards.
+ */
+class DomainSymbols {
+
+	private HashMap<String, Integer> _symbols;
+	private ArrayList<String> _ids;
+
+	public DomainSymbols(){
+		_symbols = new HashMap<String, Integer>();
+		_ids = new ArrayList<String>();
+	}
+
+	/**
+	 * @param id
+	 * @return the symbol of the id, a new symbol is created if the id was not seen before
+	 */
+	public int intern(String id){
+		Integer symbol = _symbols.get(id);
+		if(symbol == null){
+			symbol = _ids.size();
+			_symbols.put(id, symbol);
+			_ids.add(id);
+		}
+		return symbol;
+	}
+
+	/**
+	 * @param id
+	 * @return the symbol of the id, -1 if the id is not part of the domain
+	 */
+	public int lookup(String id){
+		if(id == null)
+			return -1;
+		Integer symbol = _symbols.get(id);
+		return symbol != null ? symbol : -1;
+	}
+
+	/**
+	 * @param symbol
+	 * @return the id that was interned to the symbol
+	 */
+	public String id(int symbol){
+		return _ids.get(symbol);
+	}
+
+	/**
+	 * @return number of interned ids
+	 */
+	public int size(){
+		return _ids.size();
+	}
+}
@@ -0,0 +1,160 @@
+package scenarioGenerator;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Metrics of a ScenarioGenerator: counters of the work done in the hot paths of generation and
+ * histograms of the parse time, the latency of every scenario and the recursion depth of
+ * couldServiceBeOffered, over all scenarios generated so far. Metrics are only collected if the
+ * system property scenarioGenerator.metrics is true; the flag is read once, so when it is off the
+ * checks at the call sites are compiled away. With the system property scenarioGenerator.jfr
+ * every scenario is also recorded as JFR event (see ScenarioGenerationEvent). All methods are
+ * thread safe, so the metrics can be queried while scenarios are being generated.
+ */
+public class GeneratorMetrics {
+
+	public static final boolean ENABLED = Boolean.getBoolean("scenarioGenerator.metrics");
+	public static final boolean JFR = Boolean.getBoolean("scenarioGenerator.jfr");
+
+	/**
+	 * Counted events, summed over all scenarios
+	 */
+	public enum Counter {
+		SCENARIOS, FAILED_SCENARIOS, CLONES, MERGES, FILL_SERVICE, ENABLE_ACTION, BACKTRACKS,
+		OFFER_CHECKS, OFFER_MEMO_HITS, NOGOOD_LOOKUPS, NOGOOD_HITS, NOGOOD_SAVED_SEARCHES, SEARCH_STEPS
+	}
+
+	/**
+	 * Recorded distributions
+	 */
+	public enum Distribution {
+		PARSE_NANOS, SCENARIO_NANOS, OFFER_DEPTH
+	}
+
+	private long[] _counters;
+	private Histogram[] _histograms;
+
+	public GeneratorMetrics(){
+		_counters = new long[Counter.values().length];
+		_histograms = new Histogram[Distribution.values().length];
+		for(int i=0; i<_histograms.length; i++){
+			_histograms[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * Adds the metrics of a generated scenario
+	 * @param scenario
+	 * @param nanos time the generation took
+	 * @param failed true if no complete scenario was generated
+	 */
+	public synchronized void add(ScenarioMetrics scenario, long nanos, boolean failed){
+		for(Counter counter : Counter.values()){
+			_counters[counter.ordinal()] += scenario.count(counter);
+		}
+		_counters[Counter.SCENARIOS.ordinal()]++;
+		if(failed)
+			_counters[Counter.FAILED_SCENARIOS.ordinal()]++;
+		_histograms[Distribution.SCENARIO_NANOS.ordinal()].record(nanos);
+		_histograms[Distribution.OFFER_DEPTH.ordinal()].add(scenario.offerDepth());
+	}
+
+	/**
+	 * @param distribution
+	 * @param value to record
+	 */
+	public synchronized void record(Distribution distribution, long value){
+		_histograms[distribution.ordinal()].record(value);
+	}
+
+	/**
+	 * @param counter
+	 * @return value of the counter
+	 */
+	public synchronized long count(Counter counter){
+		return _counters[counter.ordinal()];
+	}
+
+	/**
+	 * @param distribution
+	 * @return a copy of the histogram of the distribution
+	 */
+	public synchronized Histogram histogram(Distribution distribution){
+		return _histograms[distribution.ordinal()].copy();
+	}
+
+	/**
+	 * Clears all counters and histograms
+	 */
+	public synchronized void reset(){
+		for(int i=0; i<_counters.length; i++){
+			_counters[i] = 0;
+		}
+		for(int i=0; i<_histograms.length; i++){
+			_histograms[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * Writes the metrics in a readable layout, one line per metric, or a single line saying that
+	 * metrics are disabled
+	 * @param out
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void summary(Appendable out) throws IOException {
+		if(!ENABLED){
+			out.append("metrics disabled, set the system property scenarioGenerator.metrics to true\r\n");
+			return;
+		}
+		for(Counter counter : Counter.values()){
+			out.append(counter.name().toLowerCase(Locale.ROOT)).append(": ").append(Long.toString(_counters[counter.ordinal()])).append("\r\n");
+		}
+		out.append("offer memo hit rate: ").append(rate(Counter.OFFER_MEMO_HITS, Counter.OFFER_CHECKS)).append("\r\n");
+		out.append("nogood hit rate: ").append(rate(Counter.NOGOOD_HITS, Counter.NOGOOD_LOOKUPS)).append("\r\n");
+		for(Distribution distribution : Distribution.values()){
+			Histogram h = _histograms[distribution.ordinal()];
+			out.append(distribution.name().toLowerCase(Locale.ROOT)).append(": count ").append(Long.toString(h.count()));
+			out.append(", mean ").append(String.format(Locale.ROOT, "%.1f", h.mean()));
+			out.append(", p50 ").append(Long.toString(h.percentile(0.5)));
+			out.append(", p99 ").append(Long.toString(h.percentile(0.99)));
+			out.append(", max ").append(Long.toString(h.max())).append("\r\n");
+		}
+	}
+
+	/**
+	 * @return the metrics as a single JSON object: "enabled", every counter by its lower case name
+	 * and every distribution as {"count", "mean", "p50", "p99", "max"}. If metrics are disabled
+	 * the object only holds "enabled":false.
+	 */
+	public synchronized String toJson(){
+		if(!ENABLED)
+			return "{\"enabled\":false}";
+		StringBuilder json = new StringBuilder("{\"enabled\":true,");
+		for(Counter counter : Counter.values()){
+			json.append('"').append(counter.name().toLowerCase(Locale.ROOT)).append("\":").append(_counters[counter.ordinal()]).append(',');
+		}
+		for(Distribution distribution : Distribution.values()){
+			Histogram h = _histograms[distribution.ordinal()];
+			json.append('"').append(distribution.name().toLowerCase(Locale.ROOT)).append("\":{\"count\":").append(h.count());
+			json.append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", h.mean()));
+			json.append(",\"p50\":").append(h.percentile(0.5)).append(",\"p99\":").append(h.percentile(0.99));
+			json.append(",\"max\":").append(h.max()).append("},");
+		}
+		json.setCharAt(json.length() - 1, '}');
+		return json.toString();
+	}
+
+	/**
+	 * Helper function for summary
+	 * @param hits
+	 * @param total
+	 * @return the percentage of hits, "-" if there were none
+	 */
+	private String rate(Counter hits, Counter total){
+		long t = _counters[total.ordinal()];
+		if(t == 0)
+			return "-";
+		return String.format(Locale.ROOT, "%.1f%%", 100.0 * _counters[hits.ordinal()] / t);
+	}
+}
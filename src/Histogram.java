@@ -0,0 +1,101 @@
+package scenarioGenerator;
+
+/**
+ * Histogram of non-negative values with one bucket per power of two, so recording a value costs
+ * a few instructions and the memory use is fixed. Percentiles are approximated by the upper
+ * bound of the bucket they fall in. Not synchronised.
+ */
+public class Histogram {
+
+	// bucket i holds the values that need i bits: 0, 1, 2-3, 4-7, ...
+	private long[] _buckets;
+	private long _count;
+	private long _sum;
+	private long _max;
+
+	public Histogram(){
+		_buckets = new long[65];
+	}
+
+	/**
+	 * @param value to record, negative values are recorded as 0
+	 */
+	public void record(long value){
+		if(value < 0)
+			value = 0;
+		_buckets[64 - Long.numberOfLeadingZeros(value)]++;
+		_count++;
+		_sum += value;
+		if(value > _max)
+			_max = value;
+	}
+
+	/**
+	 * Adds all values recorded by the other histogram
+	 * @param other
+	 */
+	public void add(Histogram other){
+		for(int i=0; i<_buckets.length; i++){
+			_buckets[i] += other._buckets[i];
+		}
+		_count += other._count;
+		_sum += other._sum;
+		if(other._max > _max)
+			_max = other._max;
+	}
+
+	/**
+	 * @return a copy of this histogram
+	 */
+	public Histogram copy(){
+		Histogram copy = new Histogram();
+		copy.add(this);
+		return copy;
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long count(){
+		return _count;
+	}
+
+	/**
+	 * @return sum of the recorded values
+	 */
+	public long sum(){
+		return _sum;
+	}
+
+	/**
+	 * @return largest recorded value, 0 if there are none
+	 */
+	public long max(){
+		return _max;
+	}
+
+	/**
+	 * @return average of the recorded values, 0 if there are none
+	 */
+	public double mean(){
+		return _count > 0 ? (double) _sum / _count : 0;
+	}
+
+	/**
+	 * @param fraction between 0 and 1, 0.5 for the median
+	 * @return value below which (approximately) the fraction of the recorded values lies, 0 if
+	 * there are none
+	 */
+	public long percentile(double fraction){
+		long rank = (long) Math.ceil(fraction * _count);
+		long seen = 0;
+		for(int i=0; i<_buckets.length; i++){
+			seen += _buckets[i];
+			if(seen >= rank && seen > 0){
+				long upper = i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+				return Math.min(upper, _max);
+			}
+		}
+		return _max;
+	}
+}
@@ -0,0 +1,113 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Helper class representing a map with (small) non negative int keys. The values are stored in an
+ * array indexed by key, so lookups need neither hashing nor boxing of the key. Meant for dense
+ * keys such as the ids of Tasks and SmartObjects or interned domain symbols.
+ *
+ * @param <V> value type
+ */
+public class IntMap<V> {
+
+	private Object[] _values;
+	private int _size;
+
+	public IntMap(){
+		this(16);
+	}
+
+	/**
+	 * @param capacity expected largest key + 1
+	 */
+	public IntMap(int capacity){
+		_values = new Object[Math.max(1, capacity)];
+		_size = 0;
+	}
+
+	/**
+	 * @param key
+	 * @return the value stored under the key, null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key){
+		if(key < 0 || key >= _values.length)
+			return null;
+		return (V) _values[key];
+	}
+
+	/**
+	 * @param key
+	 * @return true if the map contains the key, false otherwise
+	 */
+	public boolean containsKey(int key){
+		return get(key) != null;
+	}
+
+	/**
+	 * Stores the value under the specified key, replacing the value stored before
+	 * @param key non negative
+	 * @param value not null
+	 * @return the value stored before, null if there was none
+	 */
+	public V put(int key, V value){
+		if(key < 0)
+			throw new IllegalArgumentException("Negative key: "+key);
+		if(value == null)
+			throw new IllegalArgumentException("Null value for key: "+key);
+		if(key >= _values.length)
+			_values = Arrays.copyOf(_values, Math.max(key + 1, _values.length * 2));
+		V old = get(key);
+		_values[key] = value;
+		if(old == null)
+			_size++;
+		return old;
+	}
+
+	/**
+	 * @param key
+	 * @return the value that was stored under the key, null if there was none
+	 */
+	public V remove(int key){
+		V old = get(key);
+		if(old != null){
+			_values[key] = null;
+			_size--;
+		}
+		return old;
+	}
+
+	/**
+	 * @return all values stored in the map, in the order of their keys
+	 */
+	public ArrayList<V> values(){
+		ArrayList<V> values = new ArrayList<V>(_size);
+		for(int i=0; i<_values.length; i++){
+			if(_values[i] != null)
+				values.add(get(i));
+		}
+		return values;
+	}
+	
+	/**
+	 * @return all keys of the map, in ascending order
+	 */
+	public int[] keys(){
+		int[] keys = new int[_size];
+		int k = 0;
+		for(int i=0; i<_values.length; i++){
+			if(_values[i] != null)
+				keys[k++] = i;
+		}
+		return keys;
+	}
+	
+	/**
+	 * @return number of keys in the map
+	 */
+	public int size(){
+		return _size;
+	}
+}
@@ -0,0 +1,207 @@
+package scenarioGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes every scenario as one JSON object on a single line (JSON Lines). The object holds the
+ * request ("template", "criticalTask", "difficulty", "setting", "seed") and the arrays
+ * "planning", "story", "initObjects", "dynamicObjects" and "services". Objects are written as
+ * {"id", "object", "name"} with the id of the SmartObject and the id and name of its description,
+ * Services as {"service", "name"}. Records are written directly to the writer as they come in.
+ */
+public class JsonLinesExporter implements ScenarioExporter {
+
+	private static final String[] SECTIONS = {"planning", "story", "initObjects", "dynamicObjects", "services"};
+
+	private Writer _out;
+	// index of the section that is currently open, -1 if none
+	private int _section;
+	private boolean _first;
+
+	/**
+	 * @param out to write the scenarios to, should be buffered and use UTF-8
+	 */
+	public JsonLinesExporter(Writer out){
+		_out = out;
+		_section = -1;
+	}
+
+	public void beginScenario(ScenarioRequest request) throws IOException {
+		_section = -1;
+		_out.write("{\"template\":");
+		string(request.template());
+		_out.write(",\"criticalTask\":");
+		string(request.criticalTask());
+		_out.write(",\"difficulty\":");
+		_out.write(Integer.toString(request.difficulty()));
+		_out.write(",\"setting\":");
+		string(request.setting());
+		_out.write(",\"seed\":");
+		_out.write(Long.toString(request.seed()));
+	}
+
+	public void planningTask(Task task, List<SmartObject> objects, List<Service> services) throws IOException {
+		item(0);
+		_out.write("{\"id\":");
+		_out.write(Integer.toString(task.id()));
+		_out.write(",\"task\":");
+		string(task.taskDesc().id());
+		_out.write(",\"name\":");
+		string(task.taskDesc().name());
+		usedObjects(objects, services);
+		_out.write('}');
+	}
+
+	public void storyAction(AtomTask action, Agent actor, Service goal, List<SmartObject> objects, List<Service> services) throws IOException {
+		item(1);
+		_out.write("{\"id\":");
+		_out.write(Integer.toString(action.id()));
+		_out.write(",\"action\":");
+		string(action.actionDesc().id());
+		_out.write(",\"name\":");
+		string(action.actionDesc().name());
+		_out.write(",\"actor\":");
+		if(actor != null)
+			object(actor);
+		else
+			_out.write("null");
+		_out.write(",\"goal\":");
+		if(goal != null)
+			service(goal);
+		else
+			_out.write("null");
+		usedObjects(objects, services);
+		_out.write('}');
+	}
+
+	public void initObject(SmartObject object) throws IOException {
+		item(2);
+		object(object);
+	}
+
+	public void dynamicObject(SmartObject object) throws IOException {
+		item(3);
+		object(object);
+	}
+
+	public void offeredService(Service service, SmartObject object, int difficulty) throws IOException {
+		item(4);
+		_out.write("{\"service\":");
+		service(service);
+		_out.write(",\"object\":");
+		object(object);
+		_out.write(",\"difficulty\":");
+		_out.write(Integer.toString(difficulty));
+		_out.write('}');
+	}
+
+	public void endScenario() throws IOException {
+		section(SECTIONS.length);
+		_out.write("}\n");
+	}
+
+	public void close() throws IOException {
+		_out.close();
+	}
+
+	/**
+	 * Helper function that starts a new element of the specified section
+	 * @param section
+	 * @throws IOException
+	 */
+	private void item(int section) throws IOException {
+		section(section);
+		if(!_first)
+			_out.write(',');
+		_first = false;
+	}
+
+	/**
+	 * Helper function that closes the open section and writes all sections up to the specified
+	 * section, so every record contains all sections even if they are empty
+	 * @param section
+	 * @throws IOException
+	 */
+	private void section(int section) throws IOException {
+		while(_section < section){
+			if(_section >= 0)
+				_out.write(']');
+			_section++;
+			if(_section < SECTIONS.length){
+				_out.write(",\"");
+				_out.write(SECTIONS[_section]);
+				_out.write("\":[");
+				_first = true;
+			}
+		}
+	}
+
+	private void usedObjects(List<SmartObject> objects, List<Service> services) throws IOException {
+		_out.write(",\"objects\":[");
+		for(int i=0; i<objects.size(); i++){
+			if(i > 0)
+				_out.write(',');
+			_out.write("{\"object\":");
+			object(objects.get(i));
+			_out.write(",\"service\":");
+			service(services.get(i));
+			_out.write('}');
+		}
+		_out.write(']');
+	}
+
+	private void object(SmartObject object) throws IOException {
+		_out.write("{\"id\":");
+		_out.write(Integer.toString(object.id()));
+		_out.write(",\"object\":");
+		string(object.objDesc().id());
+		_out.write(",\"name\":");
+		string(object.objDesc().name());
+		_out.write('}');
+	}
+
+	private void service(Service service) throws IOException {
+		_out.write("{\"service\":");
+		string(service.id());
+		_out.write(",\"name\":");
+		string(service.name());
+		_out.write('}');
+	}
+
+	private void string(String s) throws IOException {
+		writeString(_out, s);
+	}
+
+	/**
+	 * Writes a JSON string literal, escaping quotes, backslashes and all control characters
+	 * @param out
+	 * @param s
+	 * @throws IOException
+	 */
+	static void writeString(Writer out, String s) throws IOException {
+		if(s == null){
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		for(int i=0; i<s.length(); i++){
+			char c = s.charAt(i);
+			switch(c){
+			case '"': out.write("\\\""); break;
+			case '\\': out.write("\\\\"); break;
+			case '\n': out.write("\\n"); break;
+			case '\r': out.write("\\r"); break;
+			case '\t': out.write("\\t"); break;
+			default:
+				if(c < 0x20){
+					out.write(String.format("\\u%04x", (int) c));
+				}
+				else
+					out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
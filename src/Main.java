@@ -1,11 +1,13 @@
 package scenarioGenerator;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 
 public class Main {
@@ -18,15 +20,29 @@ public class Main {
 	 * - critical task name
 	 * - critical task difficulty
 	 * - setting
+	 * The system property scenarioGenerator.parser selects the domain parser: "dom" (default) or
+	 * "stax" for the streaming parser. The parsed domain is kept in the snapshot file named by the
+	 * system property scenarioGenerator.snapshot (default SO_ontology.xml.snapshot, "none" to
+	 * always parse the xml). The system property scenarioGenerator.threads sets the number of
+	 * threads used to generate scenarios (default: number of processors). The system property
+	 * scenarioGenerator.seed fixes the seed of the batch (default: random), from which the seeds of
+	 * all scenarios are derived. The system property scenarioGenerator.export adds machine readable
+	 * copies of all scenarios: "jsonl" (scenarios.jsonl), "binary" (scenarios.bin) or both,
+	 * separated by a comma. The system properties scenarioGenerator.timeout (milliseconds) and
+	 * scenarioGenerator.budget (search steps) limit the generation of every scenario (default: no
+	 * limit); scenarios that exceed a limit are written as far as they were generated. With the
+	 * system property scenarioGenerator.metrics a summary of the metrics of the batch is printed
+	 * at the end (see GeneratorMetrics).
 	 */
 	public static void main(String[] args) {
 		
 		// parse domain knowledge
-		ProtegeDomainParser parser = new ProtegeDomainParser();
-		if(!parser.parseDomain("SO_ontology.xml")){
+		ScenarioGenerator generator = loadGenerator("SO_ontology.xml");
+		if(generator == null){
 			System.err.println("Error occured during domain parsing");
 			System.exit(1);
 		}
+		ProtegeDomainParser parser = generator.parser();
 		
 		// hard coded input for quick testing
 		String[] scenarioTemplates = {"basic", "basic", "basic", "basic", "basic", "basic", "basic", "basic", "basic", "basic", "basic", "basic"};
@@ -34,131 +50,58 @@ public class Main {
 		int[] difficulties = {2, 2, 1, 1, 2, 2, 1, 1, 2, 2, 1, 1};
 		String[] settings = {"Park", "Home", "Restaurant", "Laboratorium", "Laboratorium", "Restaurant", "Park", "Home","Home", "Restaurant", "Laboratorium", "Park"};
 		
-		String[] output = new String[60];
+		long seed = Long.getLong("scenarioGenerator.seed", new SplittableRandom().nextLong());
+		long timeout = Long.getLong("scenarioGenerator.timeout", 0);
+		long budget = Long.getLong("scenarioGenerator.budget", 0);
+		SplittableRandom randomGenerator = new SplittableRandom(seed);
 		
-		// generate scenarios
+		// generate 5 scenarios for every input combination
+		ArrayList<ScenarioRequest> requests = new ArrayList<ScenarioRequest>();
 		for(int scenarioNo=0; scenarioNo<scenarioTemplates.length; scenarioNo++){
-			// additional loop to create 5 scenarios for every input combination
 			for(int r=0; r<5; r++){
-			
-				// init program classes
-				TimeLine timeLine = new TimeLine(parser);
-				SmartObjectSelector objSelector = new SmartObjectSelector(timeLine, parser);
-				TaskDecomposer decomposer = new TaskDecomposer(timeLine, objSelector, parser);
-				
-				// get scenario template
-				//ArrayList<TaskDescription> template = parser.getScenarioTemplateByName(args[1]);
-				ArrayList<TaskDescription> template = parser.getScenarioTemplateByName(scenarioTemplates[scenarioNo]);
-				if(template == null){
-					System.err.println("Scenario template not recognised");
-					System.exit(1);
-				}
-				ArrayList<Task> tasks = timeLine.addTemplate(template);
-				
-				// parse critical task
-				//String taskId = parser.getTaskIdByName(args[2]);
-				String taskId = parser.getTaskIdByName(criticalTasks[scenarioNo]);
-				if(taskId == null){
-					System.err.println("Critical task not recognised");
-					System.exit(1);
-				}
-				
-				// parse difficulty level
-				int difficulty = 0;
-				try{
-					 //difficulty = Integer.parseInt(args[3]);
-					difficulty = difficulties[scenarioNo];
-				}
-				catch(NumberFormatException e){
-					System.err.println("Could not parse difficulty level");
-					System.exit(1);
-				}
-				// parse setting
-				String setting = parser.getSettingByName(settings[scenarioNo]);
-				if(setting ==  null){
-					System.err.println("Could not parse setting level");
-					System.exit(1);
-				}
-				
-				// fit critical task into scenario template
-				int cIndex = -1;
-				ArrayList<DecompositionSchema> decomp = new ArrayList<DecompositionSchema>();
-					// check all top level tasks from scenario template
-				for(int i=0; i<tasks.size(); i++){
-					if(tasks.get(i).taskDesc().id().equalsIgnoreCase(taskId)){
-						cIndex = i;
-						break;
-					}
-				}
-					// else check all decomposition trees of top level tasks
-				if(cIndex < 0){
-					decomp = findDecompCriticalTask(parser, tasks, taskId, decomposer, difficulty);
-					if(decomp == null){
-						System.err.println("Could not fit task into scenario template");
-						System.exit(1);
-					}
-				}
-				if(decomp.size() == 0 && cIndex < 0){
-					System.err.println("Could not fit task into scenario template");
-					System.exit(1);
-				}
-				if(decomp.size() > 0){
-					for(int i=0; i<tasks.size(); i++){
-						if(tasks.get(i).taskDesc().id().equalsIgnoreCase(decomp.get(0).getTaskId())){
-							cIndex = i;
-							break;
-						}
-					}
-				}
-				if(cIndex < 0){
-					System.err.println("Could not fit task into scenario template");
-					System.exit(1);
-				}
-				
-				// decompose critical task
-				if(decomp.size() > 0)
-					decomposer.decomposeTaskFixed(tasks.get(cIndex), difficulty, setting, decomp);
-				else
-					decomposer.decomposeTask(tasks.get(cIndex), difficulty, setting, false);
-				
-				// decompose additional tasks from scenario template
-				for(int i=cIndex-1; i>=0; i--){
-					decomposer.decomposeTask(tasks.get(i), difficulty, setting, true);
-				}
-				for(int i=cIndex+1; i<tasks.size(); i++){
-					decomposer.decomposeTask(tasks.get(i), difficulty, setting, true);
-				}
-				String heading = "Task to train: "+criticalTasks[scenarioNo]+" in the "+parser.getSettingName(setting)+" at level: "+difficulties[scenarioNo]+"\r\n";
-				output[scenarioNo*5 + r] = heading + timeLine.printScenario() +"\r\n -------------------------------------------------- \r\n";
+				requests.add(new ScenarioRequest(scenarioTemplates[scenarioNo], criticalTasks[scenarioNo], difficulties[scenarioNo], settings[scenarioNo], randomGenerator.nextLong(), timeout, budget));
 			}
 		}
-			
+		// select one scenario of every input combination
 		int[] randomnr = new int[12];
-		Random randomGenerator = new Random();
 		for(int r=0; r<12; r++){
 			randomnr[r] = randomGenerator.nextInt(5);
 		}
-		// print output
+		
+		// generate and print output
+		int threads = Integer.getInteger("scenarioGenerator.threads", Runtime.getRuntime().availableProcessors());
+		BatchGenerator batch = new BatchGenerator(generator, threads);
+		ScenarioWriter out = null;
+		ArrayList<ScenarioExporter> exporters = new ArrayList<ScenarioExporter>();
 		try {
-			FileWriter fstream = new FileWriter("scenario.txt");
-			BufferedWriter out = new BufferedWriter(fstream);
-			// write selected scenarios
-			out.write("---------------------------------------------------------------\r\n Selected scenarios: \r\n -------------------------------------------------------\r\n");
-			for(int index=0; index<randomnr.length; index++){
-				out.write("ScenarioNo: "+index + " iteration: "+ randomnr[index] + " " + output[index*5 + randomnr[index]]);
-			}
-			// write all scenarios
-			out.write("---------------------------------------------------------------\r\n All scenarios: \r\n --------------------------------------------------------------- \r\n");
-			for(String s : output){
-				out.write(s);
-			}
-			// write random numbers for selection check
-			for(int i : randomnr){
-				out.write(i+"\r\n");
-			}
+			out = new ScenarioWriter(new File("scenario.txt"), seed, randomnr, 5);
+			createExporters(System.getProperty("scenarioGenerator.export", ""), exporters);
+			int failed = batch.generate(requests, out, exporters);
 			out.close();
-		}catch (IOException e) {
+			if(failed > 0)
+				System.err.println(failed+" of "+requests.size()+" scenarios could not be generated completely");
+		} catch (IOException e) {
+			if(out != null)
+				out.abort();
 			e.printStackTrace();
+		} finally {
+			// also close the exporters that were created before a failure
+			for(ScenarioExporter exporter : exporters){
+				try {
+					exporter.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			batch.shutdown();
+		}
+		System.out.println("Service implementation lookups: "+parser.getServiceImplCacheHits()+" cached, "+parser.getServiceImplCacheMisses()+" searched");
+		if(GeneratorMetrics.ENABLED){
+			try {
+				generator.metrics().summary(System.out);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		
 	}
@@ -166,61 +109,35 @@ public class Main {
 	
 	
 	/**
-	 * Brute force fitting of the target task
-	 * @param parser, reference to domain parse
-	 * @param template, scenario template
-	 * @param taskId, target task id
-	 * @param decomposer, reference to decomposer class
-	 * @param difficulty, desired difficulty for scenario
-	 * @return
+	 * @param formats comma separated list of export formats, "jsonl" writes scenarios.jsonl and
+	 * "binary" writes scenarios.bin
+	 * @param exporters to add a new exporter for every format to, holds the exporters created so
+	 * far if an output file cannot be created
+	 * @throws IOException if an output file cannot be created
 	 */
-	private static ArrayList<DecompositionSchema> findDecompCriticalTask(DomainParser parser, ArrayList<Task> template, String taskId, TaskDecomposer decomposer,int difficulty){
-		MultiValueTreeMap<String, DecompositionSchema> decompMap = new MultiValueTreeMap<String, DecompositionSchema>();
-		ArrayList<DecompositionSchema> decomps = new ArrayList<DecompositionSchema>();
-		ArrayList<String> taskIds = new ArrayList<String>();
-		for(Task t : template){
-			taskIds.add(t.taskDesc().id());
-		}
-		ArrayList<String> temp = new ArrayList<String>();
-		boolean taskFound = false;
-		//build lookup table of all possible decompositions of the template tasks
-		while(!taskIds.isEmpty()){
-			for(String tId : taskIds){
-				if(tId.equalsIgnoreCase(taskId)){
-					taskFound = true;
-					continue;
-				}
-				else{
-					ArrayList<String> decomp = parser.getTaskDescById(tId).getAllTaskDecompositions(); 
-					for(String d : decomp){
-						DecompositionSchema schema = parser.getDecompSchemaById(d);
-						ArrayList<String> decompTasks = schema.getDecomposition();
-						for(String dTask : decompTasks){
-							temp.add(dTask);
-							decompMap.put(dTask, schema);
-						}
-					}
-				}
-			}
-			taskIds = temp;
-			temp = new ArrayList<String>();
+	private static void createExporters(String formats, ArrayList<ScenarioExporter> exporters) throws IOException{
+		for(String format : formats.split(",")){
+			format = format.trim();
+			if(format.equalsIgnoreCase("jsonl"))
+				exporters.add(new JsonLinesExporter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream("scenarios.jsonl"), "UTF-8"))));
+			else if(format.equalsIgnoreCase("binary"))
+				exporters.add(new BinaryScenarioExporter(new BufferedOutputStream(new FileOutputStream("scenarios.bin"))));
+			else if(!format.isEmpty())
+				System.err.println("Unknown export format "+format+", skipped");
 		}
-		// find target task in lookup table and follow pointers back to original template task
-		if(taskFound){
-			// track decomps to reach critical task
-			String tId = taskId;
-			while(decompMap.get(tId) != null){
-				ArrayList<DecompositionSchema> schemas = decompMap.get(tId);
-				Collections.shuffle(schemas);
-				decomposer.sortDecompositions(schemas, difficulty);
-				decomps.add(schemas.get(0));
-				tId = schemas.get(0).getTaskId();
-			}
-			Collections.reverse(decomps);
-			return decomps;
-		}
-		return null;
 	}
-
+	
+	/**
+	 * Parses the domain knowledge with the parser and snapshot file selected by the system
+	 * properties scenarioGenerator.parser and scenarioGenerator.snapshot
+	 * @param xmlFile domain knowledge file name
+	 * @return a generator for the domain, null if the domain could not be parsed
+	 */
+	static ScenarioGenerator loadGenerator(String xmlFile){
+		String snapshot = System.getProperty("scenarioGenerator.snapshot", xmlFile+".snapshot");
+		if(snapshot.equalsIgnoreCase("none"))
+			snapshot = null;
+		return ScenarioGenerator.load(xmlFile, System.getProperty("scenarioGenerator.parser", "dom"), snapshot);
+	}
 
 }
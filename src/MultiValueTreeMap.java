@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.TreeMap;
 
 /**
@@ -17,6 +18,13 @@ public class MultiValueTreeMap<K,V> {
 		_map = new TreeMap<K, ArrayList<V>>();
 	}
 	
+	/**
+	 * @param comparator used to order the keys
+	 */
+	public MultiValueTreeMap(Comparator<? super K> comparator){
+		_map = new TreeMap<K, ArrayList<V>>(comparator);
+	}
+	
 	/**
 	 * Stores value under the specified key. If the key already existed, the value is added to
 	 * the list of existing values, otherwise the key is created
@@ -49,6 +57,20 @@ public class MultiValueTreeMap<K,V> {
 		}
 	}
 	
+	/**
+	 * Removes the value that was stored last under the specified key. If no values remain, the key
+	 * is removed as well.
+	 * @param key
+	 */
+	public void removeLast(K key){
+		ArrayList<V> list = _map.get(key);
+		if(list == null)
+			return;
+		list.remove(list.size() - 1);
+		if(list.isEmpty())
+			_map.remove(key);
+	}
+
 	/**
 	 * @param key
 	 * @return all values stored under the specified key
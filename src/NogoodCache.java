@@ -0,0 +1,139 @@
+package scenarioGenerator;
+
+import java.util.HashMap;
+
+/**
+ * Remembers the sub problems of a scenario that could not be solved: a Service that could not be
+ * filled or an action that could not be enabled, for a difficulty and setting, in a world state
+ * identified by the signature of the TimeLine (see TimeLine.signature). Searching the same sub
+ * problem again from the same world state is pruned. Only repeatable failures may be added: those
+ * that did not depend on random choices made during the search (a search that failed after its
+ * own random choices changed the world state could succeed when repeated). For every nogood
+ * the number of searches made to find out it cannot be solved is kept, so the cache can report
+ * how many searches it saved. Pruning is probabilistic: world states are only compared by their
+ * 64 bit signature, so a collision (with a probability of about 2^-64 per pair of states) prunes
+ * a search that could have succeeded. A cache belongs to a single scenario and is not synchronised.
+ */
+public class NogoodCache {
+
+	private HashMap<Key, Long> _nogoods;
+	private long _searches;
+	private long _lookups;
+	private long _hits;
+	private long _savedSearches;
+
+	public NogoodCache(){
+		_nogoods = new HashMap<Key, Long>();
+	}
+
+	/**
+	 * @param problem id of the Service or action description
+	 * @param difficulty of the scenario
+	 * @param setting of the scenario
+	 * @param signature of the world state
+	 * @return true if the sub problem is known to be unsolvable in this world state
+	 */
+	public boolean contains(String problem, int difficulty, String setting, long signature){
+		_lookups++;
+		Long cost = _nogoods.get(new Key(problem, difficulty, setting, signature));
+		if(cost == null)
+			return false;
+		_hits++;
+		_savedSearches += cost;
+		return true;
+	}
+
+	/**
+	 * Counts a search of a sub problem that is not a known nogood
+	 * @return mark to pass to add if the search fails
+	 */
+	public long startSearch(){
+		return _searches++;
+	}
+
+	/**
+	 * Records that a sub problem could not be solved
+	 * @param problem id of the Service or action description
+	 * @param difficulty of the scenario
+	 * @param setting of the scenario
+	 * @param signature of the world state the search started from
+	 * @param mark returned by startSearch when the search started
+	 */
+	public void add(String problem, int difficulty, String setting, long signature, long mark){
+		_nogoods.put(new Key(problem, difficulty, setting, signature), _searches - mark);
+	}
+
+	/**
+	 * Forgets all nogoods, the counters are kept
+	 */
+	public void clear(){
+		_nogoods.clear();
+	}
+
+	/**
+	 * @return number of nogoods recorded
+	 */
+	public int size(){
+		return _nogoods.size();
+	}
+
+	/**
+	 * @return number of searches that were started, including nested searches
+	 */
+	public long searches(){
+		return _searches;
+	}
+
+	/**
+	 * @return number of times the cache was consulted
+	 */
+	public long lookups(){
+		return _lookups;
+	}
+
+	/**
+	 * @return number of searches that were pruned
+	 */
+	public long hits(){
+		return _hits;
+	}
+
+	/**
+	 * @return number of searches, including nested searches, the pruned searches would have made
+	 */
+	public long savedSearches(){
+		return _savedSearches;
+	}
+
+	private static final class Key {
+
+		private final String _problem;
+		private final int _difficulty;
+		private final String _setting;
+		private final long _signature;
+
+		Key(String problem, int difficulty, String setting, long signature){
+			_problem = problem;
+			_difficulty = difficulty;
+			_setting = setting;
+			_signature = signature;
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if(!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return _signature == other._signature && _difficulty == other._difficulty && _problem.equals(other._problem)
+					&& (_setting == null ? other._setting == null : _setting.equals(other._setting));
+		}
+
+		@Override
+		public int hashCode(){
+			int hash = _problem.hashCode();
+			hash = 31 * hash + _difficulty;
+			hash = 31 * hash + (_setting != null ? _setting.hashCode() : 0);
+			return 31 * hash + (int) (_signature ^ (_signature >>> 32));
+		}
+	}
+}
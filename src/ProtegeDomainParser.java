@@ -2,7 +2,16 @@ package scenarioGenerator;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -18,24 +27,56 @@ import org.w3c.dom.NodeList;
  */
 public class ProtegeDomainParser implements DomainParser{
 	
+	// ordered views on the domain, used where the domain is iterated
 	private TreeMap<String, TaskDescription> _taskDescriptions;
 	private TreeMap<String, ServiceImplementation> _serviceImplementations;
 	private TreeMap<String, ArrayList<String>> _scenarioTemplates;
-	private TreeMap<String, AbstractSmartObjectDescription>_smartObjects;
 	private TreeMap<String, AbstractSmartObjectDescription> _agents;
-	private TreeMap<String, DecompositionSchema> _decompSchemas;
 	private TreeMap<String, Service> _services;
 	private TreeMap<String, String> _settings;
+	// lookups by interned id
+	private DomainSymbols _symbols;
+	private IntMap<TaskDescription> _taskDescsBySymbol;
+	private IntMap<ServiceImplementation> _serviceImplsBySymbol;
+	private IntMap<AbstractSmartObjectDescription> _smartObjects;
+	private IntMap<DecompositionSchema> _decompSchemas;
+	private IntMap<Service> _servicesBySymbol;
+	private ServiceHierarchy _serviceHierarchy;
+	private DecompositionIndex _decompositionIndex;
+	private SettingFitTable _settingFits;
+	// lookups by case insensitive name or type, see nameKey
+	private HashMap<String, String> _taskIdsByName;
+	private HashMap<String, String> _settingIdsByName;
+	private HashMap<String, String> _templatesByName;
+	private HashMap<String, List<AgentDescription>> _agentDescsByType;
+	// DecompositionSchemas grouped by score, by task id and difficulty
+	private ConcurrentHashMap<String, ConcurrentHashMap<Integer, List<List<DecompositionSchema>>>> _decompsByScore;
+	// ServiceImplementations by SmartObjectDescription symbol and Service symbol
+	private AtomicReferenceArray<AtomicReferenceArray<List<ServiceImplementation>>> _serviceImplsByObj;
+	private AtomicLong _serviceImplHits;
+	private AtomicLong _serviceImplMisses;
+	private DomainSnapshot _snapshot;
 
 	public ProtegeDomainParser(){
 		_taskDescriptions = new TreeMap<String, TaskDescription>();
 		_serviceImplementations = new TreeMap<String, ServiceImplementation>();
 		_scenarioTemplates = new TreeMap<String, ArrayList<String>>();
-		_smartObjects = new TreeMap<String, AbstractSmartObjectDescription>();
 		_agents = new TreeMap<String, AbstractSmartObjectDescription>();
-		_decompSchemas = new TreeMap<String, DecompositionSchema>();
 		_services = new TreeMap<String, Service>();
 		_settings = new TreeMap<String, String>();
+		_symbols = new DomainSymbols();
+		_taskDescsBySymbol = new IntMap<TaskDescription>();
+		_serviceImplsBySymbol = new IntMap<ServiceImplementation>();
+		_smartObjects = new IntMap<AbstractSmartObjectDescription>();
+		_decompSchemas = new IntMap<DecompositionSchema>();
+		_servicesBySymbol = new IntMap<Service>();
+		_decompsByScore = new ConcurrentHashMap<String, ConcurrentHashMap<Integer, List<List<DecompositionSchema>>>>();
+		_taskIdsByName = new HashMap<String, String>();
+		_settingIdsByName = new HashMap<String, String>();
+		_templatesByName = new HashMap<String, String>();
+		_agentDescsByType = new HashMap<String, List<AgentDescription>>();
+		_serviceImplHits = new AtomicLong();
+		_serviceImplMisses = new AtomicLong();
 	}
 	
 	public boolean parseDomain(String file) {
@@ -58,33 +99,12 @@ public class ProtegeDomainParser implements DomainParser{
 					if(childNodes.item(j).getNodeName().equalsIgnoreCase("type")){
 						//determine instance class and parse accordingly
 						String type = childNodes.item(j).getFirstChild().getNodeValue();
-						if(type.equalsIgnoreCase("Service")){
-							parseService(curNode);
-						}else if(type.equalsIgnoreCase("Setting")){
-							parseSetting(curNode);
-						}else if(type.equalsIgnoreCase("AtomTask")){
-							parseAtomTask(curNode);
-						}else if(type.equalsIgnoreCase("Task")){
-							parseTask(curNode);
-						}else if(type.equalsIgnoreCase("SmartObject")){
-							parseSmartObject(curNode);
-						}else if(type.equalsIgnoreCase("Agent")){
-							parseAgent(curNode);
-						}else if(type.equalsIgnoreCase("SmartObjectType")){
-								parseSmartObjectType(curNode);
-						}else if(type.equalsIgnoreCase("AgentType")){
-							parseAgentType(curNode);
-						}else if(type.equalsIgnoreCase("ServiceImplementation")){
-							parseServiceImplementation(curNode);
-						}else if(type.equalsIgnoreCase("DecompositionSchema")){
-							parseDecompositionSchema(curNode);
-						}else if(type.equalsIgnoreCase("ScenarioTemplate")){
-							parseScenarioTemplate(curNode);
-						}else
-							break;
+						parseInstance(type, parseId(curNode), readSlotValues(curNode));
+						break;
 					}
 				}
 			}
+			finishParsing();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return false;
@@ -93,16 +113,190 @@ public class ProtegeDomainParser implements DomainParser{
 	}
 	
 	/**
-	 * Helper function to parse the specified slot values of a specific node
-	 * @param node
-	 * @param slotNames
-	 * @return
+	 * Creates the description of a single simple instance and stores it in the internal structures
+	 * @param type of the instance
+	 * @param id of the instance
+	 * @param instanceSlots values of all slots of the instance, by (case insensitive) slot name
+	 * @return false if the type of the instance is not part of the domain knowledge
 	 */
-	private ArrayList<ArrayList<String>> parseSlotValues(Node node, String...slotNames){
-		ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>(slotNames.length);
-		for(int i=0; i<slotNames.length; i++){
-			values.add(new ArrayList<String>());
+	protected boolean parseInstance(String type, String id, TreeMap<String, ArrayList<String>> instanceSlots){
+		if(type.equalsIgnoreCase("Service")){
+			parseService(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("Setting")){
+			parseSetting(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("AtomTask")){
+			parseAtomTask(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("Task")){
+			parseTask(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("SmartObject")){
+			parseSmartObject(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("Agent")){
+			parseAgent(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("SmartObjectType")){
+			parseSmartObjectType(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("AgentType")){
+			parseAgentType(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("ServiceImplementation")){
+			parseServiceImplementation(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("DecompositionSchema")){
+			parseDecompositionSchema(id, instanceSlots);
+		}else if(type.equalsIgnoreCase("ScenarioTemplate")){
+			parseScenarioTemplate(id, instanceSlots);
+		}else
+			return false;
+		if(_snapshot != null)
+			_snapshot.addInstance(type, id, instanceSlots);
+		return true;
+	}
+	
+	/**
+	 * @param snapshot that records all instances parsed from now on, null to stop recording
+	 */
+	void setSnapshot(DomainSnapshot snapshot){
+		_snapshot = snapshot;
+	}
+	
+	/**
+	 * Builds the structures that are derived from the parsed domain knowledge. Must be called once
+	 * all instances have been parsed.
+	 */
+	protected void finishParsing(){
+		// precompute the Service hierarchy now all Services are known
+		_serviceHierarchy = new ServiceHierarchy(_services);
+		// index the decomposition graph backwards now all tasks and schemas are known
+		_decompositionIndex = new DecompositionIndex(_taskDescriptions.values(), this);
+		_decompsByScore.clear();
+		// score all objects for all settings now the object hierarchy is known
+		_settingFits = new SettingFitTable(_smartObjects.values(), _settings.keySet());
+		buildNameIndexes();
+		compileConstraints();
+		_serviceImplsByObj = new AtomicReferenceArray<AtomicReferenceArray<List<ServiceImplementation>>>(_symbols.size());
+	}
+	
+	/**
+	 * Helper function for finishParsing that gives every ServiceImplementation a position in a
+	 * bitset and compiles its constraints to a bitset of these positions. Ids that only differ in
+	 * case share a position, as constraints are compared case insensitively.
+	 */
+	private void compileConstraints(){
+		TreeMap<String, Integer> bits = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+		for(String implId : _serviceImplementations.keySet()){
+			if(!bits.containsKey(implId))
+				bits.put(implId, bits.size());
+		}
+		for(ServiceImplementation si : _serviceImplementations.values()){
+			BitSet constraintBits = new BitSet(bits.size());
+			for(String constraint : si.constraints()){
+				// constraints on unknown ServiceImplementations can never be violated
+				Integer bit = bits.get(constraint);
+				if(bit != null)
+					constraintBits.set(bit);
+			}
+			si.compileConstraints(bits.get(si.id()), constraintBits);
+		}
+	}
+	
+	/**
+	 * Helper function for finishParsing that indexes tasks, settings and scenario templates by
+	 * name and AgentDescriptions by all types they (indirectly) have. Where several concepts
+	 * share a name the first one in id order is kept, like the linear searches did before.
+	 */
+	private void buildNameIndexes(){
+		_taskIdsByName.clear();
+		for(TaskDescription task : _taskDescriptions.values()){
+			if(!_taskIdsByName.containsKey(nameKey(task.name())))
+				_taskIdsByName.put(nameKey(task.name()), task.id());
+		}
+		_settingIdsByName.clear();
+		for(String settingId : _settings.keySet()){
+			if(!_settingIdsByName.containsKey(nameKey(_settings.get(settingId))))
+				_settingIdsByName.put(nameKey(_settings.get(settingId)), settingId);
+		}
+		_templatesByName.clear();
+		for(String name : _scenarioTemplates.keySet()){
+			if(!_templatesByName.containsKey(nameKey(name)))
+				_templatesByName.put(nameKey(name), name);
+		}
+		TreeMap<String, ArrayList<AgentDescription>> byType = new TreeMap<String, ArrayList<AgentDescription>>();
+		for(AbstractSmartObjectDescription obj : _agents.values()){
+			if(!(obj instanceof AgentDescription))
+				continue;
+			for(String type : agentTypes(obj)){
+				ArrayList<AgentDescription> descriptions = byType.get(type);
+				if(descriptions == null){
+					descriptions = new ArrayList<AgentDescription>();
+					byType.put(type, descriptions);
+				}
+				descriptions.add((AgentDescription) obj);
+			}
+		}
+		_agentDescsByType.clear();
+		for(String type : byType.keySet()){
+			_agentDescsByType.put(type, Collections.unmodifiableList(byType.get(type)));
 		}
+	}
+	
+	/**
+	 * Helper function for buildNameIndexes
+	 * @param obj
+	 * @return the keys of the types of the agent (type) and all agent (types) it inherits from
+	 */
+	private TreeSet<String> agentTypes(AbstractSmartObjectDescription obj){
+		TreeSet<String> types = new TreeSet<String>();
+		TreeSet<String> visited = new TreeSet<String>();
+		ArrayList<AbstractSmartObjectDescription> open = new ArrayList<AbstractSmartObjectDescription>();
+		open.add(obj);
+		visited.add(obj.id());
+		while(!open.isEmpty()){
+			AbstractSmartObjectDescription cur = open.remove(open.size()-1);
+			if(cur instanceof AgentTypeDescription)
+				types.add(nameKey(((AgentTypeDescription) cur).type()));
+			else if(cur instanceof AgentDescription)
+				types.add(nameKey(((AgentDescription) cur).type()));
+			for(String parentId : cur.parentIds()){
+				AbstractSmartObjectDescription parent = _agents.get(parentId);
+				if(parent != null && visited.add(parentId))
+					open.add(parent);
+			}
+		}
+		return types;
+	}
+	
+	/**
+	 * @param name
+	 * @return key under which the name is indexed, equal for names that only differ in case
+	 */
+	private static String nameKey(String name){
+		return name == null ? null : name.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Helper function to store a concept of the domain under its interned id
+	 * @param map
+	 * @param id
+	 * @param value
+	 */
+	private <V> void store(IntMap<V> map, String id, V value){
+		map.put(_symbols.intern(id), value);
+	}
+	
+	/**
+	 * Helper function to look up a concept of the domain by id
+	 * @param map
+	 * @param id
+	 * @return the concept, null if there is no concept with this id
+	 */
+	private <V> V lookup(IntMap<V> map, String id){
+		return map.get(_symbols.lookup(id));
+	}
+	
+	/**
+	 * Helper function to read the values of all slots of a specific node
+	 * @param node
+	 * @return values by (case insensitive) slot name
+	 */
+	private TreeMap<String, ArrayList<String>> readSlotValues(Node node){
+		TreeMap<String, ArrayList<String>> values = new TreeMap<String, ArrayList<String>>(String.CASE_INSENSITIVE_ORDER);
 		// find all slot nodes
 		if(node.getNodeType() == Node.ELEMENT_NODE){
 			Element el = (Element) node;
@@ -113,18 +307,11 @@ public class ProtegeDomainParser implements DomainParser{
 					Element slot = (Element) slots.item(i);
 					// determine slot type
 					NodeList names = slot.getElementsByTagName("slot_reference");
-					int typeIndex = -1;
-					for(int j=0; j<slotNames.length; j++){
-						if(names.item(0).getFirstChild().getNodeValue().equalsIgnoreCase(slotNames[j])){
-							typeIndex = j;
-						}
-					}
+					String slotName = names.item(0).getFirstChild().getNodeValue();
 					// get value(s)
-					if(typeIndex >= 0){
-						NodeList slotValues = slot.getElementsByTagName("value");
-						for(int j=0; j<slotValues.getLength(); j++){
-							values.get(typeIndex).add(slotValues.item(j).getFirstChild().getNodeValue());
-						}
+					NodeList slotValues = slot.getElementsByTagName("value");
+					for(int j=0; j<slotValues.getLength(); j++){
+						addSlotValue(values, slotName, slotValues.item(j).getFirstChild().getNodeValue());
 					}
 				}
 			}
@@ -132,6 +319,36 @@ public class ProtegeDomainParser implements DomainParser{
 		return values;
 	}
 	
+	/**
+	 * Helper function to store the value of a slot
+	 * @param values
+	 * @param slotName
+	 * @param value
+	 */
+	protected static void addSlotValue(TreeMap<String, ArrayList<String>> values, String slotName, String value){
+		ArrayList<String> list = values.get(slotName);
+		if(list == null){
+			list = new ArrayList<String>();
+			values.put(slotName, list);
+		}
+		list.add(value);
+	}
+	
+	/**
+	 * Helper function to select the specified slot values of a specific instance
+	 * @param instanceSlots
+	 * @param slotNames
+	 * @return
+	 */
+	private ArrayList<ArrayList<String>> parseSlotValues(TreeMap<String, ArrayList<String>> instanceSlots, String...slotNames){
+		ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>(slotNames.length);
+		for(int i=0; i<slotNames.length; i++){
+			ArrayList<String> slot = instanceSlots.get(slotNames[i]);
+			values.add(slot != null ? new ArrayList<String>(slot) : new ArrayList<String>());
+		}
+		return values;
+	}
+	
 	private String parseId(Node node){
 		if(node.getNodeType() == Node.ELEMENT_NODE){
 			Element el = (Element) node;
@@ -140,12 +357,10 @@ public class ProtegeDomainParser implements DomainParser{
 		return null;
 	}
 	
-	private boolean parseService(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseService(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "service_parent", "service_children"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		String parent = "";
 		if(slotValues.get(1).size() > 0)
@@ -157,15 +372,14 @@ public class ProtegeDomainParser implements DomainParser{
 			return false;
 		Service service = new Service(id, name, parent, childrenIds);
 		_services.put(id, service);
+		store(_servicesBySymbol, id, service);
 		return true;
 	}
 	
-	private boolean parseSetting(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseSetting(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		
 		// if not all required information found return null
@@ -176,12 +390,10 @@ public class ProtegeDomainParser implements DomainParser{
 		return true;
 	}
 	
-	private boolean parseScenarioTemplate(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseScenarioTemplate(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "tasks"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> tasks = slotValues.get(1);
 		
@@ -193,12 +405,10 @@ public class ProtegeDomainParser implements DomainParser{
 		return true;
 	}
 	
-	private boolean parseSmartObject(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseSmartObject(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "offers", "parents", "expected_settings", "unexpected_settings"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> serviceIds = slotValues.get(1);
 		ArrayList<String> parentIds = slotValues.get(2);
@@ -218,16 +428,14 @@ public class ProtegeDomainParser implements DomainParser{
 			obj.addSettingFit(uSetting, -1);
 		}
 		
-		_smartObjects.put(id, obj);
+		store(_smartObjects, id, obj);
 		return true;
 	}
 	
-	private boolean parseAgent(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseAgent(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "offers", "parents", "expected_settings", "unexpected_settings", "type"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> serviceIds = slotValues.get(1);
 		ArrayList<String> parentIds = slotValues.get(2);
@@ -248,17 +456,15 @@ public class ProtegeDomainParser implements DomainParser{
 			agent.addSettingFit(uSetting, -1);
 		}
 
-		_smartObjects.put(id, agent);
+		store(_smartObjects, id, agent);
 		_agents.put(id, agent);
 		return true;
 	}
 	
-	private boolean parseSmartObjectType(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseSmartObjectType(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "offers", "parents", "children"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> serviceIds = slotValues.get(1);
 		ArrayList<String> parentIds = slotValues.get(2);
@@ -272,16 +478,14 @@ public class ProtegeDomainParser implements DomainParser{
 		// create object from information
 		SmartObjectTypeDescription obj = new SmartObjectTypeDescription(id, name, serviceIds, parentIds, childrenIds);
 
-		_smartObjects.put(id, obj);
+		store(_smartObjects, id, obj);
 		return true;
 	}
 	
-	private boolean parseAgentType(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseAgentType(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "offers", "parents", "children", "type"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> serviceIds = slotValues.get(1);
 		ArrayList<String> parentIds = slotValues.get(2);
@@ -296,17 +500,15 @@ public class ProtegeDomainParser implements DomainParser{
 		// create object from information
 		AgentTypeDescription agentType = new AgentTypeDescription(id, name, serviceIds, parentIds, childrenIds, type);
 
-		_smartObjects.put(id, agentType);
+		store(_smartObjects, id, agentType);
 		_agents.put(id, agentType);
 		return true;
 	}
 	
-	private boolean parseServiceImplementation(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseServiceImplementation(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "implements", "smartObject", "requires", "actors", "constraints", "min_difficulty", "max_difficulty"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		String service = slotValues.get(1).get(0);
 		String objId = slotValues.get(2).get(0);
@@ -317,17 +519,16 @@ public class ProtegeDomainParser implements DomainParser{
 		if(objId != null && service != null){
 			ServiceImplementation si = new ServiceImplementation(id, name, service, objId, actIds, actorTypes, constraints, Integer.parseInt(slotValues.get(6).get(0)), Integer.parseInt(slotValues.get(7).get(0)));
 			_serviceImplementations.put(id, si);
+			store(_serviceImplsBySymbol, id, si);
 			return true;
 		}
 		return false;
 	}
 	
-	private boolean parseDecompositionSchema(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseDecompositionSchema(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "decomposition", "precondition_services", "precondition_objects", "task", "min_difficulty", "max_difficulty"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> decomposition = slotValues.get(1);
 		ArrayList<String> preconServices = slotValues.get(2);
@@ -337,18 +538,16 @@ public class ProtegeDomainParser implements DomainParser{
 		// create ServiceImplementation Object
 		if(id != null && name != null){
 			DecompositionSchema schema = new DecompositionSchema(id, name, task, decomposition, preconServices, preconObjects, Integer.parseInt(slotValues.get(5).get(0)), Integer.parseInt(slotValues.get(6).get(0)));
-			_decompSchemas.put(id, schema);
+			store(_decompSchemas, id, schema);
 			return true;
 		}
 		return false;
 	}
 	
-	private boolean parseAtomTask(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseAtomTask(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "uses"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> serviceIds = slotValues.get(1);
 		
@@ -356,17 +555,16 @@ public class ProtegeDomainParser implements DomainParser{
 		if(name != null){
 			AtomTaskDescription action = new AtomTaskDescription(id, name, serviceIds);
 			_taskDescriptions.put(id, action);
+			store(_taskDescsBySymbol, id, action);
 			return true;
 		}
 		return false;
 	}
 	
-	private boolean parseTask(Node node){
-		// parse id
-		String id = parseId(node);
+	private boolean parseTask(String id, TreeMap<String, ArrayList<String>> instanceSlots){
 		// parse slots
 		String[] slots = {"name", "decompositions", "uses"};
-		ArrayList<ArrayList<String>> slotValues = parseSlotValues(node, slots);
+		ArrayList<ArrayList<String>> slotValues = parseSlotValues(instanceSlots, slots);
 		String name = slotValues.get(0).get(0);
 		ArrayList<String> decompIds = slotValues.get(1);
 		ArrayList<String> serviceIds = slotValues.get(2);
@@ -375,6 +573,7 @@ public class ProtegeDomainParser implements DomainParser{
 		if(name != null){
 			TaskDescription task = new TaskDescription(id, name, decompIds, serviceIds);
 			_taskDescriptions.put(id, task);
+			store(_taskDescsBySymbol, id, task);
 			return true;
 		}
 		return false;
@@ -387,46 +586,40 @@ public class ProtegeDomainParser implements DomainParser{
 	
 	@Override
 	public ServiceImplementation getServiceImplById(String id) {
-		return _serviceImplementations.get(id);
+		return lookup(_serviceImplsBySymbol, id);
 	}
 	
 	@Override
 	public ArrayList<TaskDescription> getScenarioTemplateByName(String name) {
 		ArrayList<TaskDescription> tasks = new ArrayList<TaskDescription>();
-		if(_scenarioTemplates.get(name) == null)
+		ArrayList<String> template = _scenarioTemplates.get(name);
+		if(template == null && _templatesByName.containsKey(nameKey(name)))
+			template = _scenarioTemplates.get(_templatesByName.get(nameKey(name)));
+		if(template == null)
 			return null;
-		for(String id : _scenarioTemplates.get(name)){
-			tasks.add(_taskDescriptions.get(id));
+		for(String id : template){
+			tasks.add(lookup(_taskDescsBySymbol, id));
 		}
 		return tasks;
 	}
 	
 	@Override
 	public String getTaskIdByName(String name){
-		for(TaskDescription task : _taskDescriptions.values()){
-			if(task.name().equalsIgnoreCase(name))
-				return task.id();
-		}
-		return null;
+		return _taskIdsByName.get(nameKey(name));
 	}
 	
 	
 	public String getSettingByName(String name){
-		for(String settingId : _settings.keySet()){
-			if(_settings.get(settingId).equalsIgnoreCase(name))
-				return settingId;
-		}
-		return null;
-			
+		return _settingIdsByName.get(nameKey(name));
 	}
 	@Override
 	public TaskDescription getTaskDescById(String id) {
-		return _taskDescriptions.get(id);
+		return lookup(_taskDescsBySymbol, id);
 	}
 
 	@Override
 	public AtomTaskDescription getAtomTaskDescById(String id) {
-		TaskDescription task = _taskDescriptions.get(id);
+		TaskDescription task = lookup(_taskDescsBySymbol, id);
 		if(task != null && !task.isComplexTask())
 			return (AtomTaskDescription) task;
 		return null;
@@ -434,12 +627,23 @@ public class ProtegeDomainParser implements DomainParser{
 
 	@Override
 	public AbstractSmartObjectDescription getSmartObjById(String id) {
-		return _smartObjects.get(id);
+		return lookup(_smartObjects, id);
 	}
 
 	@Override
 	public Service getServiceById(String id) {
-		return _services.get(id);
+		return lookup(_servicesBySymbol, id);
+	}
+
+	@Override
+	public int getServiceSymbol(String id) {
+		int symbol = _symbols.lookup(id);
+		return _servicesBySymbol.containsKey(symbol) ? symbol : -1;
+	}
+
+	@Override
+	public Service getServiceBySymbol(int symbol) {
+		return _servicesBySymbol.get(symbol);
 	}
 
 	@Override
@@ -449,17 +653,78 @@ public class ProtegeDomainParser implements DomainParser{
 
 	@Override
 	public DecompositionSchema getDecompSchemaById(String id) {
-		return _decompSchemas.get(id);
+		return lookup(_decompSchemas, id);
 	}
 
 	@Override
-	public ArrayList<ServiceImplementation> getServiceImplByObj(String smartObjId, String serviceId){
+	public List<ServiceImplementation> getServiceImplByObj(String smartObjId, String serviceId){
+		return lookupServiceImplByObj(smartObjId, serviceId, true);
+	}
+	
+	/**
+	 * Helper function that answers getServiceImplByObj from the cache, filling it on a miss
+	 * @param smartObjId
+	 * @param serviceId
+	 * @param count true to count the hit or miss, false for the lookups of the parents made
+	 * while filling the cache
+	 * @return
+	 */
+	private List<ServiceImplementation> lookupServiceImplByObj(String smartObjId, String serviceId, boolean count){
+		int obj = _symbols.lookup(smartObjId);
+		int service = _symbols.lookup(serviceId);
+		if(obj < 0 || service < 0)
+			return Collections.emptyList();
+		// the cache only exists once the domain has been parsed completely
+		AtomicReferenceArray<AtomicReferenceArray<List<ServiceImplementation>>> cache = _serviceImplsByObj;
+		if(cache == null)
+			return Collections.unmodifiableList(findServiceImplByObj(smartObjId, serviceId));
+		AtomicReferenceArray<List<ServiceImplementation>> byService = cache.get(obj);
+		if(byService == null){
+			cache.compareAndSet(obj, null, new AtomicReferenceArray<List<ServiceImplementation>>(cache.length()));
+			byService = cache.get(obj);
+		}
+		List<ServiceImplementation> implementations = byService.get(service);
+		if(implementations != null){
+			if(count)
+				_serviceImplHits.incrementAndGet();
+			return implementations;
+		}
+		if(count)
+			_serviceImplMisses.incrementAndGet();
+		implementations = Collections.unmodifiableList(findServiceImplByObj(smartObjId, serviceId));
+		if(!byService.compareAndSet(service, null, implementations))
+			implementations = byService.get(service);
+		return implementations;
+	}
+	
+	/**
+	 * @return number of calls to getServiceImplByObj answered from the cache
+	 */
+	public long getServiceImplCacheHits(){
+		return _serviceImplHits.get();
+	}
+	
+	/**
+	 * @return number of calls to getServiceImplByObj that had to search the domain
+	 */
+	public long getServiceImplCacheMisses(){
+		return _serviceImplMisses.get();
+	}
+	
+	/**
+	 * Helper function that searches the ServiceImplementations of the SmartObjectDescription and
+	 * its parents for implementations of the Service (or one of its children)
+	 * @param smartObjId
+	 * @param serviceId
+	 * @return
+	 */
+	private ArrayList<ServiceImplementation> findServiceImplByObj(String smartObjId, String serviceId){
 		ArrayList<ServiceImplementation> implementations = new ArrayList<ServiceImplementation>();
-		AbstractSmartObjectDescription so = _smartObjects.get(smartObjId);
+		AbstractSmartObjectDescription so = lookup(_smartObjects, smartObjId);
 		Service service = getServiceById(serviceId);
 		if(so != null && service != null){
 			for(String implId : so.serviceImplementationIds()){
-				ServiceImplementation si = _serviceImplementations.get(implId);
+				ServiceImplementation si = lookup(_serviceImplsBySymbol, implId);
 				if(si.service().equalsIgnoreCase(serviceId))
 					implementations.add(si);
 				else if(isServiceChild(service, si.service())){
@@ -467,7 +732,7 @@ public class ProtegeDomainParser implements DomainParser{
 				}
 			}
 			for(String parentId : so.parentIds()){
-				implementations.addAll(getServiceImplByObj(parentId, serviceId));
+				implementations.addAll(lookupServiceImplByObj(parentId, serviceId, false));
 			}
 		}
 		return implementations;
@@ -475,27 +740,100 @@ public class ProtegeDomainParser implements DomainParser{
 
 	@Override
 	public boolean isServiceChild(Service parent, String childId){
-		for(String serviceId : parent.childIds()){
-			if(serviceId.equalsIgnoreCase(childId))
-				return true;
-			else{
-				Service service = getServiceById(serviceId);
-				if(isServiceChild(service, childId))
-					return true;
-			}
-		}
-		return false;
+		if(parent == null || _serviceHierarchy == null)
+			return false;
+		return _serviceHierarchy.isDescendant(parent.id(), childId);
+	}
+	
+	@Override
+	public List<String> getServiceAncestors(String serviceId){
+		if(_serviceHierarchy == null)
+			return new ArrayList<String>();
+		return _serviceHierarchy.ancestors(serviceId);
 	}
 
 	@Override
-	public ArrayList<AgentDescription> getAgentDescByType(String actorType) {
-		ArrayList<AgentDescription> descriptions = new ArrayList<AgentDescription>();
-		for(AbstractSmartObjectDescription obj : _agents.values()){
-			if(obj instanceof AgentDescription){
-				if(checkParentDescriptions(obj, actorType))
-					descriptions.add((AgentDescription)obj);
+	public List<DecompositionSchema> getProducingDecompositions(String taskId){
+		if(_decompositionIndex == null)
+			return new ArrayList<DecompositionSchema>();
+		return _decompositionIndex.producers(taskId);
+	}
+	
+	@Override
+	public boolean isTaskReachable(String fromTaskId, String toTaskId){
+		if(_decompositionIndex == null)
+			return false;
+		return _decompositionIndex.isReachable(fromTaskId, toTaskId);
+	}
+
+	@Override
+	public List<List<DecompositionSchema>> getDecompositionsByScore(String taskId, int difficulty){
+		ConcurrentHashMap<Integer, List<List<DecompositionSchema>>> byDifficulty = _decompsByScore.get(taskId);
+		if(byDifficulty == null){
+			byDifficulty = new ConcurrentHashMap<Integer, List<List<DecompositionSchema>>>();
+			ConcurrentHashMap<Integer, List<List<DecompositionSchema>>> existing = _decompsByScore.putIfAbsent(taskId, byDifficulty);
+			if(existing != null)
+				byDifficulty = existing;
+		}
+		List<List<DecompositionSchema>> groups = byDifficulty.get(difficulty);
+		if(groups == null){
+			groups = groupDecompositionsByScore(taskId, difficulty);
+			byDifficulty.putIfAbsent(difficulty, groups);
+		}
+		return groups;
+	}
+	
+	/**
+	 * Helper function for getDecompositionsByScore
+	 * @param taskId
+	 * @param difficulty
+	 * @return
+	 */
+	private List<List<DecompositionSchema>> groupDecompositionsByScore(String taskId, int difficulty){
+		ArrayList<DecompositionSchema> decomps = new ArrayList<DecompositionSchema>();
+		TaskDescription task = getTaskDescById(taskId);
+		if(task != null){
+			for(String id : task.getAllTaskDecompositions()){
+				DecompositionSchema schema = getDecompSchemaById(id);
+				if(schema != null)
+					decomps.add(schema);
+			}
+		}
+		// sort from worst to best and reverse, equally scored schemas end up in reverse domain order
+		DecompositionComparator comp = new DecompositionComparator();
+		comp.initialise(difficulty);
+		Collections.sort(decomps, comp);
+		Collections.reverse(decomps);
+		ArrayList<List<DecompositionSchema>> groups = new ArrayList<List<DecompositionSchema>>();
+		int start = 0;
+		for(int i=1; i<=decomps.size(); i++){
+			if(i == decomps.size() || comp.compare(decomps.get(start), decomps.get(i)) != 0){
+				groups.add(Collections.unmodifiableList(new ArrayList<DecompositionSchema>(decomps.subList(start, i))));
+				start = i;
 			}
 		}
+		return Collections.unmodifiableList(groups);
+	}
+
+	@Override
+	public int getSettingFit(String smartObjId, String setting){
+		if(_settingFits == null)
+			return Integer.MIN_VALUE;
+		return _settingFits.score(smartObjId, setting);
+	}
+	
+	@Override
+	public List<AbstractSmartObjectDescription> getBestFittingChildren(String typeId, String setting){
+		if(_settingFits == null)
+			return new ArrayList<AbstractSmartObjectDescription>();
+		return _settingFits.bestChildren(typeId, setting);
+	}
+
+	@Override
+	public List<AgentDescription> getAgentDescByType(String actorType) {
+		List<AgentDescription> descriptions = _agentDescsByType.get(nameKey(actorType));
+		if(descriptions == null)
+			return Collections.emptyList();
 		return descriptions;
 	}
 	
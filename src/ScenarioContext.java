@@ -0,0 +1,173 @@
+package scenarioGenerator;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * State that belongs to the generation of a single scenario, shared by the TimeLine of the
+ * scenario and all its clones. Hands out the ids of Tasks and SmartObjects, which are unique
+ * within the scenario, and provides all random choices made for the scenario from a seeded
+ * generator, so the same seed and domain always result in the same scenario. A context is only
+ * used by the thread generating its scenario, so scenarios can be generated concurrently without
+ * any synchronisation.
+ */
+public class ScenarioContext {
+
+	private int _nextTaskId;
+	private int _nextObjectId;
+	private long _seed;
+	private SplittableRandom _random;
+	private long _version;
+	private long _signature;
+	private NogoodCache _nogoods;
+	private long _steps;
+	private long _deadline;
+	private long _budget;
+	private ScenarioMetrics _metrics;
+
+	/**
+	 * Creates a context with a randomly chosen seed
+	 */
+	public ScenarioContext(){
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * @param seed for all random choices made for the scenario
+	 */
+	public ScenarioContext(long seed){
+		_nextTaskId = 0;
+		_nextObjectId = 0;
+		_seed = seed;
+		_random = new SplittableRandom(seed);
+		_version = 0;
+		_signature = 0;
+		_nogoods = new NogoodCache();
+		_steps = 0;
+		_deadline = 0;
+		_budget = 0;
+		_metrics = GeneratorMetrics.ENABLED ? new ScenarioMetrics() : null;
+	}
+	
+	/**
+	 * Counts an event in the metrics of the scenario, does nothing if metrics are disabled
+	 * @param counter
+	 */
+	public void count(GeneratorMetrics.Counter counter){
+		if(GeneratorMetrics.ENABLED)
+			_metrics.increment(counter);
+	}
+	
+	/**
+	 * @return the metrics of the scenario, null if metrics are disabled (see GeneratorMetrics)
+	 */
+	public ScenarioMetrics metrics(){
+		return _metrics;
+	}
+	
+	/**
+	 * Limits the search for the scenario, see step
+	 * @param timeout in milliseconds from now, 0 for no deadline
+	 * @param budget maximum number of search steps, 0 for no budget
+	 */
+	public void limit(long timeout, long budget){
+		_deadline = timeout > 0 ? System.nanoTime() + timeout * 1000000L : 0;
+		_budget = budget;
+	}
+	
+	/**
+	 * Counts a step of the search for the scenario, called cooperatively by the TaskDecomposer
+	 * and SmartObjectSelector
+	 * @throws ScenarioLimitException if the deadline has passed or the budget is used up
+	 */
+	public void step(){
+		_steps++;
+		if(_budget > 0 && _steps > _budget)
+			throw new ScenarioLimitException(ScenarioLimitException.Limit.BUDGET, _steps, "Search budget of "+_budget+" steps exceeded");
+		if(_deadline != 0 && System.nanoTime() - _deadline > 0)
+			throw new ScenarioLimitException(ScenarioLimitException.Limit.DEADLINE, _steps, "Deadline exceeded after "+_steps+" search steps");
+	}
+	
+	/**
+	 * @return number of search steps made for the scenario
+	 */
+	public long steps(){
+		return _steps;
+	}
+
+	/**
+	 * @return version of the scenario, changes whenever a TimeLine of the scenario changes
+	 */
+	public long version(){
+		return _version;
+	}
+
+	/**
+	 * Records that a TimeLine of the scenario has changed
+	 */
+	public void changed(){
+		_version++;
+	}
+
+	/**
+	 * @return signature of the world state of the scenario, see TimeLine.signature
+	 */
+	public long signature(){
+		return _signature;
+	}
+	
+	/**
+	 * Adds a component to the signature of the world state, or removes it if it was added before
+	 * @param component
+	 */
+	public void toggleSignature(long component){
+		_signature ^= component;
+	}
+	
+	/**
+	 * @return the sub problems of the scenario that are known to be unsolvable
+	 */
+	public NogoodCache nogoods(){
+		return _nogoods;
+	}
+	
+	/**
+	 * @return the seed of the random choices made for the scenario
+	 */
+	public long seed(){
+		return _seed;
+	}
+
+	/**
+	 * Randomly permutes the list, like Collections.shuffle but using the generator of the scenario
+	 * @param list
+	 */
+	public <T> void shuffle(List<T> list){
+		for(int i=list.size(); i>1; i--){
+			int j = _random.nextInt(i);
+			list.set(j, list.set(i-1, list.get(j)));
+		}
+	}
+
+	/**
+	 * @param bound
+	 * @return a random number between 0 (inclusive) and bound (exclusive)
+	 */
+	public int nextInt(int bound){
+		return _random.nextInt(bound);
+	}
+
+	/**
+	 * @return a new Task id
+	 */
+	public int nextTaskId(){
+		return _nextTaskId++;
+	}
+
+	/**
+	 * @return a new SmartObject id
+	 */
+	public int nextObjectId(){
+		return _nextObjectId++;
+	}
+}
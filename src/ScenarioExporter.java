@@ -0,0 +1,68 @@
+package scenarioGenerator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives a generated scenario as structured records, for output formats that are read by other
+ * programs instead of people. For every scenario beginScenario is called first, followed by the
+ * planning, the story, the init objects, the dynamic objects and the offered Services (each in
+ * the order of printScenario) and finally endScenario.
+ */
+public interface ScenarioExporter {
+
+	/**
+	 * @param request the scenario was generated for
+	 * @throws IOException
+	 */
+	public void beginScenario(ScenarioRequest request) throws IOException;
+
+	/**
+	 * @param task top level task of the planning
+	 * @param objects used by the task
+	 * @param services for which the objects are used, in the order of the objects
+	 * @throws IOException
+	 */
+	public void planningTask(Task task, List<SmartObject> objects, List<Service> services) throws IOException;
+
+	/**
+	 * @param action of the story
+	 * @param actor performing the action, null if there is none
+	 * @param goal Service obtained by the action, null if there is none
+	 * @param objects used by the action
+	 * @param services for which the objects are used, in the order of the objects
+	 * @throws IOException
+	 */
+	public void storyAction(AtomTask action, Agent actor, Service goal, List<SmartObject> objects, List<Service> services) throws IOException;
+
+	/**
+	 * @param object present at the start of the scenario
+	 * @throws IOException
+	 */
+	public void initObject(SmartObject object) throws IOException;
+
+	/**
+	 * @param object created during the scenario
+	 * @throws IOException
+	 */
+	public void dynamicObject(SmartObject object) throws IOException;
+
+	/**
+	 * @param service offered in the scenario
+	 * @param object offering the Service
+	 * @param difficulty at which the Service is offered
+	 * @throws IOException
+	 */
+	public void offeredService(Service service, SmartObject object, int difficulty) throws IOException;
+
+	/**
+	 * @throws IOException
+	 */
+	public void endScenario() throws IOException;
+
+	/**
+	 * Flushes and closes the underlying output
+	 * @throws IOException
+	 */
+	public void close() throws IOException;
+}
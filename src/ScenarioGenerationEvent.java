@@ -0,0 +1,68 @@
+package scenarioGenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded for every generated scenario if the system property scenarioGenerator.jfr is
+ * true. Only committed while a flight recording is running that enables it. The class is only
+ * loaded when the first event is recorded, so the generator also runs on JVMs without JFR as long
+ * as the property is off.
+ */
+@Name("scenarioGenerator.ScenarioGeneration")
+@Label("Scenario Generation")
+@Category("Scenario Generator")
+@Description("Generation of a single scenario")
+class ScenarioGenerationEvent extends Event {
+
+	@Label("Template")
+	String template;
+
+	@Label("Critical Task")
+	String criticalTask;
+
+	@Label("Setting")
+	String setting;
+
+	@Label("Difficulty")
+	int difficulty;
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Latency")
+	@Timespan(Timespan.NANOSECONDS)
+	long latency;
+
+	@Label("Search Steps")
+	long steps;
+
+	@Label("Failed")
+	boolean failed;
+
+	/**
+	 * Records the generation of a scenario, if the event is enabled
+	 * @param request
+	 * @param latency nanoseconds the generation took
+	 * @param steps search steps made
+	 * @param failed true if no complete scenario was generated
+	 */
+	static void record(ScenarioRequest request, long latency, long steps, boolean failed){
+		ScenarioGenerationEvent event = new ScenarioGenerationEvent();
+		if(!event.shouldCommit())
+			return;
+		event.template = request.template();
+		event.criticalTask = request.criticalTask();
+		event.setting = request.setting();
+		event.difficulty = request.difficulty();
+		event.seed = request.seed();
+		event.latency = latency;
+		event.steps = steps;
+		event.failed = failed;
+		event.commit();
+	}
+}
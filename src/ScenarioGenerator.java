@@ -0,0 +1,348 @@
+package scenarioGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Generates single scenarios from a parsed domain. The domain is only read, so one generator
+ * can be used by several threads at the same time; every scenario gets its own TimeLine,
+ * SmartObjectSelector and TaskDecomposer.
+ */
+public class ScenarioGenerator {
+
+	private ProtegeDomainParser _parser;
+	private GeneratorMetrics _metrics;
+
+	public ScenarioGenerator(ProtegeDomainParser parser){
+		_parser = parser;
+		_metrics = new GeneratorMetrics();
+	}
+	
+	/**
+	 * Parses the domain knowledge and creates a generator for it
+	 * @param xmlFile domain knowledge file name
+	 * @param parserType "stax" for the streaming parser, "dom" for the DOM based parser
+	 * @param snapshotFile file the parsed domain is kept in, null to always parse the xml
+	 * @return the generator, null if the domain could not be parsed
+	 */
+	public static ScenarioGenerator load(String xmlFile, String parserType, String snapshotFile){
+		ProtegeDomainParser parser = createParser(parserType);
+		long start = System.nanoTime();
+		boolean parsed;
+		if(snapshotFile == null)
+			parsed = parser.parseDomain(xmlFile);
+		else
+			parsed = DomainSnapshot.loadDomain(parser, xmlFile, snapshotFile);
+		if(!parsed)
+			return null;
+		ScenarioGenerator generator = new ScenarioGenerator(parser);
+		if(GeneratorMetrics.ENABLED)
+			generator._metrics.record(GeneratorMetrics.Distribution.PARSE_NANOS, System.nanoTime() - start);
+		return generator;
+	}
+	
+	/**
+	 * @param type of the parser, "stax" for the streaming parser, "dom" for the DOM based parser
+	 * @return a new domain parser of the specified type
+	 */
+	private static ProtegeDomainParser createParser(String type){
+		if(type.equalsIgnoreCase("stax"))
+			return new StreamingProtegeDomainParser();
+		if(!type.equalsIgnoreCase("dom"))
+			System.err.println("Unknown parser "+type+", using dom");
+		return new ProtegeDomainParser();
+	}
+	
+	/**
+	 * @return the parsed domain used by this generator
+	 */
+	public ProtegeDomainParser parser(){
+		return _parser;
+	}
+	
+	/**
+	 * @return the metrics of all scenarios generated so far, only collected if
+	 * GeneratorMetrics.ENABLED is set
+	 */
+	public GeneratorMetrics metrics(){
+		return _metrics;
+	}
+	
+	/**
+	 * Generates scenarios for the request, so the code used for generation is compiled before the
+	 * first real request arrives. The generated scenarios are discarded.
+	 * @param request
+	 * @param iterations number of scenarios to generate, every scenario gets another seed
+	 * @throws IllegalArgumentException if the request cannot be fulfilled by the domain
+	 */
+	public void warmUp(ScenarioRequest request, int iterations){
+		for(int i=0; i<iterations; i++){
+			ScenarioRequest r = new ScenarioRequest(request.template(), request.criticalTask(), request.difficulty(), request.setting(), request.seed() + i, request.timeout(), request.budget());
+			generate(r);
+		}
+	}
+
+	/**
+	 * Generates a scenario for the specified request
+	 * @param request
+	 * @return the scenario in a readable layout, preceded by a heading describing the request
+	 * @throws IllegalArgumentException if the request cannot be fulfilled by the domain
+	 * @throws ScenarioLimitException if the deadline or search budget of the request is exceeded
+	 */
+	public String generate(ScenarioRequest request){
+		StringBuilder scenario = new StringBuilder();
+		try {
+			generate(request, scenario);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return scenario.toString();
+	}
+	
+	/**
+	 * Generates a scenario for the specified request and writes it
+	 * @param request
+	 * @param out receives the scenario in a readable layout, preceded by a heading describing the
+	 * request
+	 * @throws IllegalArgumentException if the request cannot be fulfilled by the domain
+	 * @throws ScenarioLimitException if the deadline or search budget of the request is exceeded
+	 * @throws IOException if writing fails
+	 */
+	public void generate(ScenarioRequest request, Appendable out) throws IOException{
+		print(request, generateTimeLine(request), out);
+	}
+	
+	/**
+	 * Writes a generated scenario
+	 * @param request the scenario was generated for
+	 * @param timeLine storing the generated scenario
+	 * @param out receives the scenario in a readable layout, preceded by a heading describing the
+	 * request
+	 * @throws IOException if writing fails
+	 */
+	public void print(ScenarioRequest request, TimeLine timeLine, Appendable out) throws IOException{
+		out.append("Task to train: ").append(request.criticalTask()).append(" in the ").append(_parser.getSettingName(_parser.getSettingByName(request.setting())));
+		out.append(" at level: ").append(Integer.toString(request.difficulty())).append("\r\n");
+		out.append("Seed: ").append(Long.toString(request.seed())).append("\r\n");
+		timeLine.printScenario(out);
+		out.append("\r\n -------------------------------------------------- \r\n");
+	}
+
+	/**
+	 * Hands a generated scenario to the exporter as structured records
+	 * @param request the scenario was generated for
+	 * @param timeLine storing the generated scenario
+	 * @param out
+	 * @throws IOException if writing fails
+	 */
+	public void export(ScenarioRequest request, TimeLine timeLine, ScenarioExporter out) throws IOException{
+		out.beginScenario(request);
+		timeLine.export(out);
+		out.endScenario();
+	}
+	
+	/**
+	 * Generates a scenario for the specified request
+	 * @param request
+	 * @return the TimeLine storing the generated scenario
+	 * @throws IllegalArgumentException if the request cannot be fulfilled by the domain
+	 * @throws ScenarioLimitException if the deadline or search budget of the request is exceeded,
+	 * holding the partial scenario
+	 */
+	public TimeLine generateTimeLine(ScenarioRequest request){
+		long start = GeneratorMetrics.ENABLED || GeneratorMetrics.JFR ? System.nanoTime() : 0;
+		TimeLine timeLine = new TimeLine(_parser, new ScenarioContext(request.seed()));
+		timeLine.context().limit(request.timeout(), request.budget());
+		boolean failed = true;
+		try {
+			fillTimeLine(request, timeLine);
+			failed = false;
+		} catch (ScenarioLimitException e) {
+			throw new ScenarioLimitException(e.limit(), e.steps(), e.getMessage(), request, timeLine);
+		} finally {
+			if(GeneratorMetrics.ENABLED || GeneratorMetrics.JFR)
+				recordMetrics(request, timeLine.context(), System.nanoTime() - start, failed);
+		}
+		return timeLine;
+	}
+	
+	/**
+	 * Helper function for generateTimeLine that adds the metrics of a scenario to the metrics of
+	 * the generator and records the JFR event
+	 * @param request
+	 * @param context of the scenario
+	 * @param nanos time the generation took
+	 * @param failed true if no complete scenario was generated
+	 */
+	private void recordMetrics(ScenarioRequest request, ScenarioContext context, long nanos, boolean failed){
+		if(GeneratorMetrics.ENABLED){
+			ScenarioMetrics metrics = context.metrics();
+			metrics.add(GeneratorMetrics.Counter.NOGOOD_LOOKUPS, context.nogoods().lookups());
+			metrics.add(GeneratorMetrics.Counter.NOGOOD_HITS, context.nogoods().hits());
+			metrics.add(GeneratorMetrics.Counter.NOGOOD_SAVED_SEARCHES, context.nogoods().savedSearches());
+			metrics.add(GeneratorMetrics.Counter.SEARCH_STEPS, context.steps());
+			_metrics.add(metrics, nanos, failed);
+		}
+		if(GeneratorMetrics.JFR)
+			ScenarioGenerationEvent.record(request, nanos, context.steps(), failed);
+	}
+	
+	/**
+	 * Helper function for generateTimeLine that generates the scenario in the specified TimeLine
+	 * @param request
+	 * @param timeLine
+	 */
+	private void fillTimeLine(ScenarioRequest request, TimeLine timeLine){
+		// init program classes
+		SmartObjectSelector objSelector = new SmartObjectSelector(timeLine, _parser);
+		TaskDecomposer decomposer = new TaskDecomposer(timeLine, objSelector, _parser);
+
+		// get scenario template
+		ArrayList<TaskDescription> template = _parser.getScenarioTemplateByName(request.template());
+		if(template == null)
+			throw new IllegalArgumentException("Scenario template not recognised");
+		ArrayList<Task> tasks = timeLine.addTemplate(template);
+
+		// parse critical task
+		String taskId = _parser.getTaskIdByName(request.criticalTask());
+		if(taskId == null)
+			throw new IllegalArgumentException("Critical task not recognised");
+
+		int difficulty = request.difficulty();
+		// parse setting
+		String setting = _parser.getSettingByName(request.setting());
+		if(setting ==  null)
+			throw new IllegalArgumentException("Could not parse setting level");
+
+		// fit critical task into scenario template
+		int cIndex = -1;
+		ArrayList<DecompositionSchema> decomp = new ArrayList<DecompositionSchema>();
+			// check all top level tasks from scenario template
+		for(int i=0; i<tasks.size(); i++){
+			if(tasks.get(i).taskDesc().id().equalsIgnoreCase(taskId)){
+				cIndex = i;
+				break;
+			}
+		}
+			// else check all decomposition trees of top level tasks
+		if(cIndex < 0){
+			decomp = findDecompCriticalTask(_parser, timeLine, tasks, taskId, decomposer, difficulty);
+			if(decomp == null)
+				throw new IllegalArgumentException("Could not fit task into scenario template");
+		}
+		if(decomp.size() == 0 && cIndex < 0)
+			throw new IllegalArgumentException("Could not fit task into scenario template");
+		if(decomp.size() > 0){
+			for(int i=0; i<tasks.size(); i++){
+				if(tasks.get(i).taskDesc().id().equalsIgnoreCase(decomp.get(0).getTaskId())){
+					cIndex = i;
+					break;
+				}
+			}
+		}
+		if(cIndex < 0)
+			throw new IllegalArgumentException("Could not fit task into scenario template");
+
+		// decompose critical task
+		if(decomp.size() > 0)
+			decomposer.decomposeTaskFixed(tasks.get(cIndex), difficulty, setting, decomp);
+		else
+			decomposer.decomposeTask(tasks.get(cIndex), difficulty, setting, false);
+
+		// decompose additional tasks from scenario template
+		for(int i=cIndex-1; i>=0; i--){
+			decomposer.decomposeTask(tasks.get(i), difficulty, setting, true);
+		}
+		for(int i=cIndex+1; i<tasks.size(); i++){
+			decomposer.decomposeTask(tasks.get(i), difficulty, setting, true);
+		}
+	}
+	
+	/**
+	 * Fitting of the target task by walking backwards from the target task to a template task,
+	 * using the reverse decomposition index of the domain
+	 * @param parser, reference to domain parse
+	 * @param timeLine, scenario generated so far
+	 * @param template, scenario template
+	 * @param taskId, target task id
+	 * @param decomposer, reference to decomposer class
+	 * @param difficulty, desired difficulty for scenario
+	 * @return the DecompositionSchemas leading from a template task to the target task, null if
+	 * the target task cannot be reached from the template
+	 */
+	private static ArrayList<DecompositionSchema> findDecompCriticalTask(DomainParser parser, TimeLine timeLine, ArrayList<Task> template, String taskId, TaskDecomposer decomposer,int difficulty){
+		ArrayList<String> taskIds = new ArrayList<String>();
+		for(Task t : template){
+			taskIds.add(t.taskDesc().id());
+		}
+		if(!isInTemplate(parser, taskIds, taskId))
+			return null;
+		ArrayList<DecompositionSchema> decomps = new ArrayList<DecompositionSchema>();
+		// tasks on the current path, a task is never used twice so cycles are not followed
+		TreeSet<String> path = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		path.add(taskId);
+		if(!findTemplateTask(parser, timeLine, taskIds, taskId, decomposer, difficulty, path, decomps))
+			return null;
+		Collections.reverse(decomps);
+		return decomps;
+	}
+	
+	/**
+	 * Helper function for findDecompCriticalTask that selects a DecompositionSchema producing the
+	 * task and continues with the task decomposed by that schema, until a template task is reached
+	 * that is not produced by any other task of the template
+	 * @param parser
+	 * @param timeLine
+	 * @param taskIds ids of the template tasks
+	 * @param taskId task to produce
+	 * @param decomposer
+	 * @param difficulty
+	 * @param path tasks already on the path
+	 * @param decomps selected DecompositionSchemas, from the target task upwards
+	 * @return true if a template task was reached
+	 */
+	private static boolean findTemplateTask(DomainParser parser, TimeLine timeLine, ArrayList<String> taskIds, String taskId, TaskDecomposer decomposer, int difficulty, TreeSet<String> path, ArrayList<DecompositionSchema> decomps){
+		ArrayList<DecompositionSchema> schemas = new ArrayList<DecompositionSchema>();
+		for(DecompositionSchema schema : parser.getProducingDecompositions(taskId)){
+			if(!path.contains(schema.getTaskId()) && isInTemplate(parser, taskIds, schema.getTaskId()))
+				schemas.add(schema);
+		}
+		if(!schemas.isEmpty()){
+			timeLine.context().shuffle(schemas);
+			decomposer.sortDecompositions(schemas, difficulty);
+			for(DecompositionSchema schema : schemas){
+				path.add(schema.getTaskId());
+				decomps.add(schema);
+				if(findTemplateTask(parser, timeLine, taskIds, schema.getTaskId(), decomposer, difficulty, path, decomps))
+					return true;
+				// dead end, only possible with cycles in the decomposition graph
+				decomps.remove(decomps.size()-1);
+				path.remove(schema.getTaskId());
+			}
+		}
+		for(String id : taskIds){
+			if(id.equalsIgnoreCase(taskId))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param parser
+	 * @param taskIds ids of the template tasks
+	 * @param taskId
+	 * @return true if the task is a template task or can be reached by decomposing a template task
+	 */
+	private static boolean isInTemplate(DomainParser parser, ArrayList<String> taskIds, String taskId){
+		for(String id : taskIds){
+			if(id.equalsIgnoreCase(taskId) || parser.isTaskReachable(id, taskId))
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,74 @@
+package scenarioGenerator;
+
+/**
+ * Thrown when the generation of a scenario is stopped because it exceeded the deadline or the
+ * search budget of its request (see ScenarioRequest). The exception thrown by ScenarioGenerator
+ * holds the request and the partial scenario: the template and all decompositions and objects
+ * that were completed before the limit was reached.
+ */
+public class ScenarioLimitException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The limit of a request that can be exceeded
+	 */
+	public enum Limit { DEADLINE, BUDGET }
+
+	private Limit _limit;
+	private long _steps;
+	private transient ScenarioRequest _request;
+	private transient TimeLine _partialScenario;
+
+	/**
+	 * @param limit that was exceeded
+	 * @param steps number of search steps made before the limit was exceeded
+	 * @param message
+	 */
+	ScenarioLimitException(Limit limit, long steps, String message){
+		this(limit, steps, message, null, null);
+	}
+
+	/**
+	 * @param limit that was exceeded
+	 * @param steps number of search steps made before the limit was exceeded
+	 * @param message
+	 * @param request whose limit was exceeded
+	 * @param partialScenario the TimeLine of the scenario as far as it was generated
+	 */
+	ScenarioLimitException(Limit limit, long steps, String message, ScenarioRequest request, TimeLine partialScenario){
+		super(message);
+		_limit = limit;
+		_steps = steps;
+		_request = request;
+		_partialScenario = partialScenario;
+	}
+
+	/**
+	 * @return the limit that was exceeded
+	 */
+	public Limit limit(){
+		return _limit;
+	}
+
+	/**
+	 * @return number of search steps made before the limit was exceeded
+	 */
+	public long steps(){
+		return _steps;
+	}
+
+	/**
+	 * @return the request whose limit was exceeded, null if unknown
+	 */
+	public ScenarioRequest request(){
+		return _request;
+	}
+
+	/**
+	 * @return the TimeLine holding the scenario as far as it was generated, null if unknown
+	 */
+	public TimeLine partialScenario(){
+		return _partialScenario;
+	}
+}
@@ -0,0 +1,55 @@
+package scenarioGenerator;
+
+/**
+ * Counters and the recursion depth histogram of the generation of a single scenario, kept by its
+ * ScenarioContext. Only the thread generating the scenario updates them, so they need no
+ * synchronisation; the ScenarioGenerator adds them to its GeneratorMetrics when the scenario is
+ * done. Only used if GeneratorMetrics.ENABLED is set.
+ */
+public class ScenarioMetrics {
+
+	private long[] _counters;
+	private Histogram _offerDepth;
+
+	public ScenarioMetrics(){
+		_counters = new long[GeneratorMetrics.Counter.values().length];
+		_offerDepth = new Histogram();
+	}
+
+	/**
+	 * @param counter to increase by one
+	 */
+	public void increment(GeneratorMetrics.Counter counter){
+		_counters[counter.ordinal()]++;
+	}
+
+	/**
+	 * @param counter to increase
+	 * @param amount
+	 */
+	public void add(GeneratorMetrics.Counter counter, long amount){
+		_counters[counter.ordinal()] += amount;
+	}
+
+	/**
+	 * @param counter
+	 * @return value of the counter
+	 */
+	public long count(GeneratorMetrics.Counter counter){
+		return _counters[counter.ordinal()];
+	}
+
+	/**
+	 * @param depth of the recursion of couldServiceBeOffered, 1 for a call that is not nested
+	 */
+	public void recordOfferDepth(int depth){
+		_offerDepth.record(depth);
+	}
+
+	/**
+	 * @return the recursion depths of couldServiceBeOffered
+	 */
+	public Histogram offerDepth(){
+		return _offerDepth;
+	}
+}
@@ -0,0 +1,91 @@
+package scenarioGenerator;
+
+/**
+ * Describes the scenario that should be generated: the scenario template to start from, the task
+ * the trainee should practice (critical task), the desired difficulty level, the setting and the
+ * seed for the random choices made during generation. Optionally a request limits the time and
+ * the number of search steps generation may take, see ScenarioLimitException.
+ */
+public class ScenarioRequest {
+
+	private String _template;
+	private String _criticalTask;
+	private int _difficulty;
+	private String _setting;
+	private long _seed;
+	private long _timeout;
+	private long _budget;
+
+	public ScenarioRequest(String template, String criticalTask, int difficulty, String setting, long seed){
+		this(template, criticalTask, difficulty, setting, seed, 0, 0);
+	}
+
+	/**
+	 * @param template
+	 * @param criticalTask
+	 * @param difficulty
+	 * @param setting
+	 * @param seed
+	 * @param timeout in milliseconds from the start of the generation, 0 for no deadline
+	 * @param budget maximum number of search steps, 0 for no budget
+	 */
+	public ScenarioRequest(String template, String criticalTask, int difficulty, String setting, long seed, long timeout, long budget){
+		_template = template;
+		_criticalTask = criticalTask;
+		_difficulty = difficulty;
+		_setting = setting;
+		_seed = seed;
+		_timeout = timeout;
+		_budget = budget;
+	}
+
+	/**
+	 * @return name of the scenario template
+	 */
+	public String template(){
+		return _template;
+	}
+
+	/**
+	 * @return name of the task to train
+	 */
+	public String criticalTask(){
+		return _criticalTask;
+	}
+
+	/**
+	 * @return desired difficulty level of the scenario
+	 */
+	public int difficulty(){
+		return _difficulty;
+	}
+
+	/**
+	 * @return name of the setting of the scenario
+	 */
+	public String setting(){
+		return _setting;
+	}
+
+	/**
+	 * @return seed for the random choices made during generation
+	 */
+	public long seed(){
+		return _seed;
+	}
+
+	/**
+	 * @return milliseconds the generation may take from its start, 0 if there is no deadline
+	 */
+	public long timeout(){
+		return _timeout;
+	}
+
+	/**
+	 * @return maximum number of search steps (tasks decomposed, actions enabled and Services
+	 * searched for) the generation may make, 0 if there is no budget
+	 */
+	public long budget(){
+		return _budget;
+	}
+}
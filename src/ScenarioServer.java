@@ -0,0 +1,205 @@
+package scenarioGenerator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.SplittableRandom;
+
+/**
+ * Request loop that keeps one ScenarioGenerator, with the parsed domain and its indexes, alive
+ * for many requests. Every input line is a request of tab separated fields:
+ * template, critical task, difficulty, setting and optionally the seed (random if omitted). For
+ * every request one response is written and flushed: in the "jsonl" format (default) a single
+ * line as written by JsonLinesExporter or {"error": message}, in the "text" format the scenario
+ * as written to scenario.txt or a line starting with "Error: ". A request that exceeds its
+ * deadline or search budget is answered with {"error": message, "limit": "DEADLINE" or "BUDGET"}
+ * in the jsonl format and with the partial scenario, marked as incomplete, in the text format.
+ * The line "metrics" is answered with the metrics of the generator (see GeneratorMetrics), as
+ * {"metrics": object} or in the layout of the summary; if metrics are disabled the object is
+ * {"enabled": false}. Empty lines are ignored, the line "quit"
+ * or the end of the input stops the loop.
+ */
+public class ScenarioServer {
+
+	private ScenarioGenerator _generator;
+	private BufferedReader _in;
+	private Writer _out;
+	private boolean _json;
+	private SplittableRandom _random;
+	private long _timeout;
+	private long _budget;
+
+	/**
+	 * @param generator
+	 * @param in to read the requests from
+	 * @param out to write the responses to
+	 * @param json true to answer in the jsonl format, false for the text format
+	 */
+	public ScenarioServer(ScenarioGenerator generator, BufferedReader in, Writer out, boolean json){
+		_generator = generator;
+		_in = in;
+		_out = out;
+		_json = json;
+		_random = new SplittableRandom();
+		_timeout = 0;
+		_budget = 0;
+	}
+
+	/**
+	 * Limits the generation of every request
+	 * @param timeout in milliseconds, 0 for no deadline
+	 * @param budget maximum number of search steps, 0 for no budget
+	 */
+	public void limit(long timeout, long budget){
+		_timeout = timeout;
+		_budget = budget;
+	}
+
+	/**
+	 * Entry point of the request loop on stdin/stdout. Uses the same system properties as Main
+	 * for the parser and snapshot. The system property scenarioGenerator.format selects the
+	 * response format ("jsonl" or "text"), the system property scenarioGenerator.warmup can hold
+	 * a request that is generated scenarioGenerator.warmupIterations (default 50) times before
+	 * the first request is read. The system properties scenarioGenerator.timeout (milliseconds)
+	 * and scenarioGenerator.budget (search steps) limit the generation of every request.
+	 * @param args
+	 * - domain knowledge file name (default SO_ontology.xml)
+	 */
+	public static void main(String[] args) {
+		ScenarioGenerator generator = Main.loadGenerator(args.length > 0 ? args[0] : "SO_ontology.xml");
+		if(generator == null){
+			System.err.println("Error occured during domain parsing");
+			System.exit(1);
+		}
+		String warmUp = System.getProperty("scenarioGenerator.warmup");
+		if(warmUp != null){
+			try {
+				generator.warmUp(parseRequest(warmUp, 0), Integer.getInteger("scenarioGenerator.warmupIterations", 50));
+			} catch (IllegalArgumentException e) {
+				System.err.println("Warm up failed: "+e.getMessage());
+			}
+		}
+		boolean json = !System.getProperty("scenarioGenerator.format", "jsonl").equalsIgnoreCase("text");
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+			ScenarioServer server = new ScenarioServer(generator, in, out, json);
+			server.limit(Long.getLong("scenarioGenerator.timeout", 0), Long.getLong("scenarioGenerator.budget", 0));
+			server.run();
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Answers requests until the input ends or the line "quit" is read
+	 * @throws IOException if reading or writing fails
+	 */
+	public void run() throws IOException {
+		// responses are built in a buffer, so a request that fails halfway leaves no partial output
+		StringWriter response = new StringWriter();
+		JsonLinesExporter exporter = new JsonLinesExporter(response);
+		String line;
+		while((line = _in.readLine()) != null){
+			line = line.trim();
+			if(line.isEmpty())
+				continue;
+			if(line.equalsIgnoreCase("quit"))
+				break;
+			if(line.equalsIgnoreCase("metrics")){
+				if(_json)
+					_out.write("{\"metrics\":"+_generator.metrics().toJson()+"}\n");
+				else
+					_generator.metrics().summary(_out);
+				_out.flush();
+				continue;
+			}
+			response.getBuffer().setLength(0);
+			try {
+				ScenarioRequest request = parseRequest(line, _random.nextLong(), _timeout, _budget);
+				TimeLine timeLine = _generator.generateTimeLine(request);
+				if(_json)
+					_generator.export(request, timeLine, exporter);
+				else
+					_generator.print(request, timeLine, response);
+			} catch (ScenarioLimitException e) {
+				response.getBuffer().setLength(0);
+				if(_json)
+					writeError(response, e.getMessage(), ",\"limit\":\""+e.limit()+"\"");
+				else{
+					response.write("Incomplete scenario: "+e.getMessage()+"\r\n");
+					_generator.print(e.request(), e.partialScenario(), response);
+				}
+			} catch (IllegalArgumentException e) {
+				response.getBuffer().setLength(0);
+				if(_json)
+					writeError(response, e.getMessage(), "");
+				else
+					response.write("Error: "+e.getMessage()+"\r\n");
+			} catch (RuntimeException e) {
+				// a failing request must not end the loop, every request gets a response
+				e.printStackTrace();
+				response.getBuffer().setLength(0);
+				if(_json)
+					writeError(response, e.toString(), "");
+				else
+					response.write("Error: "+e+"\r\n");
+			}
+			_out.write(response.toString());
+			_out.flush();
+		}
+		_out.flush();
+	}
+
+	/**
+	 * Helper function that writes an error response in the jsonl format
+	 * @param out
+	 * @param message
+	 * @param fields additional JSON fields, each preceded by a comma
+	 * @throws IOException
+	 */
+	private static void writeError(Writer out, String message, String fields) throws IOException {
+		out.write("{\"error\":");
+		JsonLinesExporter.writeString(out, String.valueOf(message));
+		out.write(fields);
+		out.write("}\n");
+	}
+
+	/**
+	 * @param line tab separated fields: template, critical task, difficulty, setting and
+	 * optionally the seed
+	 * @param defaultSeed used if the line holds no seed
+	 * @return the request, without deadline or search budget
+	 * @throws IllegalArgumentException if the line is not a valid request
+	 */
+	static ScenarioRequest parseRequest(String line, long defaultSeed){
+		return parseRequest(line, defaultSeed, 0, 0);
+	}
+
+	/**
+	 * @param line tab separated fields: template, critical task, difficulty, setting and
+	 * optionally the seed
+	 * @param defaultSeed used if the line holds no seed
+	 * @param timeout in milliseconds, 0 for no deadline
+	 * @param budget maximum number of search steps, 0 for no budget
+	 * @return the request
+	 * @throws IllegalArgumentException if the line is not a valid request
+	 */
+	static ScenarioRequest parseRequest(String line, long defaultSeed, long timeout, long budget){
+		String[] fields = line.split("\t");
+		if(fields.length < 4 || fields.length > 5)
+			throw new IllegalArgumentException("Expected template, critical task, difficulty, setting and optional seed separated by tabs");
+		try {
+			int difficulty = Integer.parseInt(fields[2].trim());
+			long seed = fields.length > 4 ? Long.parseLong(fields[4].trim()) : defaultSeed;
+			return new ScenarioRequest(fields[0].trim(), fields[1].trim(), difficulty, fields[3].trim(), seed, timeout, budget);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Could not parse difficulty or seed: "+e.getMessage());
+		}
+	}
+}
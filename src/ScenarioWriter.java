@@ -0,0 +1,96 @@
+package scenarioGenerator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes a batch of generated scenarios to a file in the layout of scenario.txt: the seed of the
+ * batch, all scenarios, one selected scenario per group of requests and finally the selection.
+ * Every scenario is written to the file as soon as it is handed over; only the selected scenarios
+ * are kept in memory and appended when the writer is closed. The file is written as UTF-8.
+ */
+public class ScenarioWriter {
+
+	private Writer _out;
+	private long _seed;
+	private int[] _selection;
+	private int _groupSize;
+	private String[] _selected;
+	private int _count;
+
+	/**
+	 * @param file to write the scenarios to
+	 * @param seed of the batch
+	 * @param selection for every group the index of the selected scenario within the group
+	 * @param groupSize number of consecutive scenarios generated for the same input
+	 * @throws IOException if the file cannot be created
+	 */
+	public ScenarioWriter(File file, long seed, int[] selection, int groupSize) throws IOException {
+		_seed = seed;
+		_selection = selection.clone();
+		_groupSize = groupSize;
+		_selected = new String[selection.length];
+		_count = 0;
+		_out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		_out.write("Seed: "+_seed+"\r\n");
+		_out.write("---------------------------------------------------------------\r\n All scenarios: \r\n --------------------------------------------------------------- \r\n");
+		_out.flush();
+	}
+
+	/**
+	 * Writes the next scenario of the batch
+	 * @param scenario
+	 * @throws IOException
+	 */
+	public void write(String scenario) throws IOException {
+		int group = _count / _groupSize;
+		if(group < _selection.length && _count % _groupSize == _selection[group])
+			_selected[group] = scenario;
+		_out.write(scenario);
+		_out.flush();
+		_count++;
+	}
+
+	/**
+	 * @return number of scenarios written so far
+	 */
+	public int count(){
+		return _count;
+	}
+
+	/**
+	 * Appends the selected scenarios and the selection and closes the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		try {
+			// write selected scenarios
+			_out.write("---------------------------------------------------------------\r\n Selected scenarios: \r\n -------------------------------------------------------\r\n");
+			for(int index=0; index<_selected.length; index++){
+				if(_selected[index] != null)
+					_out.write("ScenarioNo: "+index + " iteration: "+ _selection[index] + " " + _selected[index]);
+			}
+			// write random numbers for selection check
+			for(int i : _selection){
+				_out.write(i+"\r\n");
+			}
+		} finally {
+			_out.close();
+		}
+	}
+
+	/**
+	 * Stops writing and closes the file, which keeps the scenarios written so far but no selection
+	 */
+	public void abort(){
+		try {
+			_out.close();
+		} catch (IOException e) {
+			// the file is incomplete anyway
+		}
+	}
+}
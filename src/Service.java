@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a Service or interaction possibility that a SmartObject can offer to the trainee
@@ -9,12 +10,12 @@ import java.util.ArrayList;
 public class Service extends DomainConcept{
 	
 	private String _parentId;
-	private ArrayList<String> _childIds;
+	private List<String> _childIds;
 	
 	public Service(String id, String name, String parentId, ArrayList<String> childIds) {
 		super(id, name);
 		_parentId = parentId;
-		_childIds = childIds;
+		_childIds = immutable(childIds);
 	}
 	
 	/**
@@ -28,10 +29,8 @@ public class Service extends DomainConcept{
 	/**
 	 * @return IDs of the Services that inherit from this Service
 	 */
-	public ArrayList<String> childIds(){
-		ArrayList<String> copy = new ArrayList<String>();
-		copy.addAll(_childIds);
-		return copy;
+	public List<String> childIds(){
+		return _childIds;
 	}
 
 }
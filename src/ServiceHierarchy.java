@@ -0,0 +1,85 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Transitive closure of the Service hierarchy. Every Service is interned to an index (in the order
+ * of the Service ids) and its descendants are stored as a bitset, so checking if a Service inherits
+ * from another Service is a single lookup. Built once after the domain has been parsed.
+ */
+class ServiceHierarchy {
+
+	private TreeMap<String, Integer> _index;
+	private BitSet[] _descendants;
+	private ArrayList<List<String>> _ancestorIds;
+
+	public ServiceHierarchy(TreeMap<String, Service> services){
+		_index = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+		Service[] byIndex = new Service[services.size()];
+		int next = 0;
+		for(Service service : services.values()){
+			_index.put(service.id(), next);
+			byIndex[next++] = service;
+		}
+		// determine all descendants of every Service, the visited set guards against cycles
+		_descendants = new BitSet[byIndex.length];
+		for(int i=0; i<byIndex.length; i++){
+			BitSet descendants = new BitSet(byIndex.length);
+			ArrayList<Integer> open = new ArrayList<Integer>();
+			open.add(i);
+			while(!open.isEmpty()){
+				Service service = byIndex[open.remove(open.size()-1)];
+				for(String childId : service.childIds()){
+					Integer child = _index.get(childId);
+					if(child != null && !descendants.get(child)){
+						descendants.set(child);
+						open.add(child);
+					}
+				}
+			}
+			_descendants[i] = descendants;
+		}
+		// invert the descendants to find the ancestors of every Service
+		ArrayList<ArrayList<String>> ancestors = new ArrayList<ArrayList<String>>(byIndex.length);
+		for(int i=0; i<byIndex.length; i++){
+			ancestors.add(new ArrayList<String>());
+		}
+		for(int i=0; i<byIndex.length; i++){
+			for(int d=_descendants[i].nextSetBit(0); d>=0; d=_descendants[i].nextSetBit(d+1)){
+				ancestors.get(d).add(byIndex[i].id());
+			}
+		}
+		_ancestorIds = new ArrayList<List<String>>(byIndex.length);
+		for(ArrayList<String> ids : ancestors){
+			_ancestorIds.add(Collections.unmodifiableList(ids));
+		}
+	}
+
+	/**
+	 * @param parentId
+	 * @param childId
+	 * @return true if the child Service (indirectly) inherits from the parent Service
+	 */
+	public boolean isDescendant(String parentId, String childId){
+		Integer parent = _index.get(parentId);
+		Integer child = _index.get(childId);
+		if(parent == null || child == null)
+			return false;
+		return _descendants[parent].get(child);
+	}
+
+	/**
+	 * @param serviceId
+	 * @return ids of all Services from which the Service (indirectly) inherits, ordered by id
+	 */
+	public List<String> ancestors(String serviceId){
+		Integer index = _index.get(serviceId);
+		if(index == null)
+			return Collections.emptyList();
+		return _ancestorIds.get(index);
+	}
+}
@@ -1,5 +1,7 @@
 package scenarioGenerator;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Stores information on how a specific SmartObjectDescription can offer a specific service
@@ -9,20 +11,25 @@ public class ServiceImplementation extends DomainConcept {
 	
 	private String _serviceId;
 	private String _objectId;
-	private ArrayList<String> _actionIds;
-	private ArrayList<String> _actorTypes;
-	private ArrayList<String> _constraints;
+	private List<String> _actionIds;
+	private List<String> _actorTypes;
+	private List<String> _constraints;
 	private int _minDifficulty, _maxDifficulty;
+	// compiled constraints, see compileConstraints
+	private int _bit;
+	private BitSet _constraintBits;
 	
 	public ServiceImplementation(String id, String name, String service, String objectId, ArrayList<String> actionIds, ArrayList<String> actorTypes, ArrayList<String> constraints, int minDifficulty, int maxDifficulty) {
 		super(id, name);
 		_objectId = objectId;
-		_actionIds = actionIds;		
-		_actorTypes = actorTypes;
-		_constraints = constraints;
+		_actionIds = immutable(actionIds);		
+		_actorTypes = immutable(actorTypes);
+		_constraints = immutable(constraints);
 		_minDifficulty = minDifficulty;
 		_maxDifficulty = maxDifficulty;
 		_serviceId = service;
+		_bit = -1;
+		_constraintBits = new BitSet();
 	}
 	
 	/**
@@ -42,7 +49,7 @@ public class ServiceImplementation extends DomainConcept {
 	/**
 	 * @return the IDs of the actions that have to be executed before the service can be offered
 	 */
-	public ArrayList<String> actionIds(){
+	public List<String> actionIds(){
 		return _actionIds;
 	}
 	
@@ -51,7 +58,7 @@ public class ServiceImplementation extends DomainConcept {
 	 * before the service can be offered. The index of the type should match the index of the
 	 * action.
 	 */
-	public ArrayList<String> actorTypes(){
+	public List<String> actorTypes(){
 		return _actorTypes;
 	}
 	
@@ -59,10 +66,35 @@ public class ServiceImplementation extends DomainConcept {
 	 * @return the IDs of ServiceImplementations that cannot be offered by a specific instance of 
 	 * the SmartObjectDescription if it already offering this ServiceImplementation
 	 */
-	public ArrayList<String> constraints(){
+	public List<String> constraints(){
 		return _constraints;
 	}
 	
+	/**
+	 * Stores the constraints in compiled form, called once all ServiceImplementations are parsed
+	 * @param bit position of this ServiceImplementation in the bitsets of the domain
+	 * @param constraintBits positions of the ServiceImplementations in constraints()
+	 */
+	void compileConstraints(int bit, BitSet constraintBits){
+		_bit = bit;
+		_constraintBits = constraintBits;
+	}
+	
+	/**
+	 * @return position of this ServiceImplementation in the bitsets of the domain, -1 if the
+	 * constraints have not been compiled
+	 */
+	public int bit(){
+		return _bit;
+	}
+	
+	/**
+	 * @return the constraints as bitset of ServiceImplementation positions, should not be modified
+	 */
+	public BitSet constraintBits(){
+		return _constraintBits;
+	}
+	
 	/**
 	 * @return the min value of the difficulty range at which the SmartObjectDescription can offer
 	 * the Service
@@ -31,9 +31,8 @@ public class ServiceImplementationComparator implements Comparator<ServiceImplem
 		int si1Score; int si2Score;
 		
 		// first compare based on likelihood in setting
-		int maxScore = 1;
-		si1Score = bestFit(_parser.getSmartObjById(si1.objectId()), maxScore);
-		si2Score = bestFit(_parser.getSmartObjById(si2.objectId()), maxScore);
+		si1Score = _parser.getSettingFit(si1.objectId(), _setting);
+		si2Score = _parser.getSettingFit(si2.objectId(), _setting);
 		if(si1Score < si2Score)
 			return -1; // si1 is not as suitable as si2
 		else if(si1Score > si2Score)
@@ -63,34 +62,4 @@ public class ServiceImplementationComparator implements Comparator<ServiceImplem
 			return 0; //requested difficulty falls within range
 		else return Math.min(Math.abs(_requestedDifficulty - min), Math.abs(_requestedDifficulty - max));
 	}
-	
-	/**
-	 * Helper function that scores how well the SmartObject fits in the specified Setting
-	 * @param asotd, the AbstractSmartObjectDescription of the ServiceImplementation
-	 * @param maxScore, the best score that can be achieved by an object (1 in the current implementation)
-	 * @return
-	 */
-	private int bestFit(AbstractSmartObjectDescription asotd, int maxScore){
-		int score = Integer.MIN_VALUE;
-		if(asotd instanceof SmartObjectDescription){
-			score = ((SmartObjectDescription)asotd).fitsInSetting(_setting);
-		}
-		else {
-			SmartObjectTypeDescription sotd = (SmartObjectTypeDescription) asotd;
-			int tempScore;
-			for(String child : sotd.childrenIds()){
-				tempScore = bestFit(_parser.getSmartObjById(child), maxScore);
-				if(tempScore > score){
-					score = tempScore;
-					if(score == maxScore)
-						break;
-				}
-			}
-		}
-		return score;
-		
-	}
 }
-
-
-
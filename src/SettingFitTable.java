@@ -0,0 +1,134 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Table of how well every SmartObject (type) description fits in every Setting. The score of a
+ * SmartObjectDescription is its own fit, the score of a SmartObjectTypeDescription is the best
+ * score of its children. For every type and Setting the children that reach this best score are
+ * stored as well. Settings that are not part of the domain share one column in which all objects
+ * fit equally. Built once after the domain has been parsed.
+ */
+class SettingFitTable {
+
+	private HashMap<String, Integer> _objects;
+	private HashMap<String, Integer> _settings;
+	private int[][] _scores;
+	private ArrayList<ArrayList<List<AbstractSmartObjectDescription>>> _bestChildren;
+
+	public SettingFitTable(Collection<AbstractSmartObjectDescription> objects, Collection<String> settingIds){
+		_objects = new HashMap<String, Integer>();
+		for(AbstractSmartObjectDescription obj : objects){
+			if(!_objects.containsKey(obj.id()))
+				_objects.put(obj.id(), _objects.size());
+		}
+		_settings = new HashMap<String, Integer>();
+		for(String setting : settingIds){
+			if(!_settings.containsKey(setting))
+				_settings.put(setting, _settings.size());
+		}
+		AbstractSmartObjectDescription[] byIndex = new AbstractSmartObjectDescription[_objects.size()];
+		for(AbstractSmartObjectDescription obj : objects){
+			byIndex[_objects.get(obj.id())] = obj;
+		}
+		// one extra column for Settings outside the domain
+		String[] settings = new String[_settings.size() + 1];
+		for(String setting : _settings.keySet()){
+			settings[_settings.get(setting)] = setting;
+		}
+		_scores = new int[settings.length][];
+		_bestChildren = new ArrayList<ArrayList<List<AbstractSmartObjectDescription>>>(settings.length);
+		for(int s=0; s<settings.length; s++){
+			_scores[s] = new int[byIndex.length];
+			ArrayList<List<AbstractSmartObjectDescription>> bestChildren = new ArrayList<List<AbstractSmartObjectDescription>>(byIndex.length);
+			for(int o=0; o<byIndex.length; o++){
+				bestChildren.add(null);
+			}
+			_bestChildren.add(bestChildren);
+			byte[] state = new byte[byIndex.length];
+			for(int o=0; o<byIndex.length; o++){
+				score(o, s, settings[s], byIndex, state);
+			}
+		}
+	}
+
+	/**
+	 * Helper function that scores an object and all its descendants depth first. Objects that are
+	 * still being scored (cycles in the hierarchy) do not count as children.
+	 * @param o index of the object
+	 * @param s index of the Setting
+	 * @param setting id of the Setting, null for Settings outside the domain
+	 * @param byIndex
+	 * @param state 0 not visited, 1 in progress, 2 done
+	 * @return the score
+	 */
+	private int score(int o, int s, String setting, AbstractSmartObjectDescription[] byIndex, byte[] state){
+		if(state[o] == 2)
+			return _scores[s][o];
+		if(state[o] == 1)
+			return Integer.MIN_VALUE;
+		state[o] = 1;
+		int score = Integer.MIN_VALUE;
+		List<AbstractSmartObjectDescription> best = Collections.emptyList();
+		AbstractSmartObjectDescription asotd = byIndex[o];
+		if(asotd instanceof SmartObjectDescription){
+			score = setting != null ? ((SmartObjectDescription) asotd).fitsInSetting(setting) : 0;
+		}
+		else if(asotd instanceof SmartObjectTypeDescription){
+			ArrayList<AbstractSmartObjectDescription> children = new ArrayList<AbstractSmartObjectDescription>();
+			for(String childId : ((SmartObjectTypeDescription) asotd).childrenIds()){
+				Integer child = _objects.get(childId);
+				if(child == null)
+					continue;
+				int childScore = score(child, s, setting, byIndex, state);
+				if(childScore == Integer.MIN_VALUE)
+					continue;
+				if(childScore > score){
+					score = childScore;
+					children.clear();
+				}
+				if(childScore == score)
+					children.add(byIndex[child]);
+			}
+			best = Collections.unmodifiableList(children);
+		}
+		_scores[s][o] = score;
+		_bestChildren.get(s).set(o, best);
+		state[o] = 2;
+		return score;
+	}
+
+	/**
+	 * @param objId id of the SmartObject (type) description
+	 * @param setting id of the Setting
+	 * @return how well the object, or the best fitting object inheriting from the type, fits in the
+	 * Setting: 1 expected, 0 neutral, -1 unexpected, Integer.MIN_VALUE if there is no such object
+	 */
+	public int score(String objId, String setting){
+		Integer obj = _objects.get(objId);
+		if(obj == null)
+			return Integer.MIN_VALUE;
+		return _scores[settingIndex(setting)][obj];
+	}
+
+	/**
+	 * @param typeId id of the SmartObjectTypeDescription
+	 * @param setting id of the Setting
+	 * @return the children of the type that reach the score of the type
+	 */
+	public List<AbstractSmartObjectDescription> bestChildren(String typeId, String setting){
+		Integer obj = _objects.get(typeId);
+		if(obj == null)
+			return Collections.emptyList();
+		return _bestChildren.get(settingIndex(setting)).get(obj);
+	}
+
+	private int settingIndex(String setting){
+		Integer index = setting != null ? _settings.get(setting) : null;
+		return index != null ? index : _scores.length - 1;
+	}
+}
@@ -6,13 +6,15 @@ package scenarioGenerator;
  */
 public class SmartObject {
 	
-	public static int OBJECTCOUNTER;
 	private int _objId;
 	private SmartObjectDescription _objDesc;
 	
-	public SmartObject(SmartObjectDescription sd){
-		_objId = OBJECTCOUNTER;
-		OBJECTCOUNTER++;
+	/**
+	 * @param id unique within the scenario, see ScenarioContext
+	 * @param sd
+	 */
+	public SmartObject(int id, SmartObjectDescription sd){
+		_objId = id;
 		_objDesc = sd;
 	}
 	
@@ -2,6 +2,9 @@ package scenarioGenerator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.TreeMap;
 
 
@@ -14,9 +17,26 @@ public class SmartObjectSelector {
 	private MultiValueTreeMap<String, ServiceImplementation> _smap;
 	private ServiceImplementationComparator _comp;
 	private DomainParser _parser;
+	private ScenarioContext _context;
+	// results of couldServiceBeOffered, valid for a single version of the scenario
+	private HashMap<String, MultiValueTreeMap<String, ServiceImplementation>> _offerMemo;
+	private ScenarioContext _memoContext;
+	private long _memoVersion;
+	private String _memoSetting;
+	private int _memoDifficulty;
+	private HashSet<String> _offerInProgress;
+	private int _offerCycles;
+	// set by every failing fillService and enableAction: true if the failure did not depend on
+	// random choices made during the search, so searching again from the same world state fails too
+	private boolean _repeatable;
 	
 	public SmartObjectSelector(TimeLine time, DomainParser parser){
 		_parser = parser;
+		_context = time.context();
+		_offerMemo = new HashMap<String, MultiValueTreeMap<String, ServiceImplementation>>();
+		_offerInProgress = new HashSet<String>();
+		_offerCycles = 0;
+		_repeatable = true;
 		_smap = new MultiValueTreeMap<String, ServiceImplementation>();
 		for(ServiceImplementation si: _parser.getAllServiceImplementations()){
 			addServiceImplementation(si);
@@ -50,16 +70,47 @@ public class SmartObjectSelector {
 	 * @return true if all services required by the action have been fulfilled.
 	 */
 	public boolean enableAction(TimeLine timeLine, AtomTask action, int difficulty, String setting){
+		_context.step();
+		_context.count(GeneratorMetrics.Counter.ENABLE_ACTION);
+		// prune actions that could not be enabled before in the same world state
+		NogoodCache nogoods = _context.nogoods();
+		long signature = timeLine.signature();
+		if(nogoods.contains(action.actionDesc().id(), difficulty, setting, signature)){
+			_repeatable = true;
+			return false;
+		}
+		long mark = nogoods.startSearch();
+		if(enableRequiredServices(timeLine, action, difficulty, setting))
+			return true;
+		if(_repeatable)
+			nogoods.add(action.actionDesc().id(), difficulty, setting, signature, mark);
+		return false;
+	}
+	
+	/**
+	 * Helper function for enableAction that fills the services without consulting the NogoodCache.
+	 * The services are filled one after the other, so a failure is only repeatable if the service
+	 * that failed was searched from the original world state: otherwise it may depend on the random
+	 * choices made while filling the earlier services.
+	 * @param timeLine
+	 * @param action
+	 * @param difficulty
+	 * @param setting
+	 * @return
+	 */
+	private boolean enableRequiredServices(TimeLine timeLine, AtomTask action, int difficulty, String setting){
+		long signature = timeLine.signature();
 		//support backtracking
 		TimeLine _timeLine = timeLine.clone();
 		
 		TreeMap<String, SmartObject> implementations = new TreeMap<String, SmartObject>();
-		ArrayList<String> services = action.actionDesc().getRequiredServiceIds();
+		List<String> services = action.actionDesc().getRequiredServiceIds();
 		// find smart objects for all required services
 		for(String service : services){
 			SmartObject si = fillService(_timeLine, service, difficulty, setting);
 			if(si == null){
 				System.err.println("Could not offer "+service+" for action " + action.actionDesc().name() );
+				_repeatable = _repeatable && _timeLine.signature() == signature;
 				return false;
 			}
 			implementations.put(service, si);
@@ -72,6 +123,7 @@ public class SmartObjectSelector {
 			}
 			else{
 				System.err.println("Object "+ obj.objDesc().name() +" not yet added to timeline");
+				_repeatable = false;
 				return false;
 			}
 		}
@@ -90,15 +142,45 @@ public class SmartObjectSelector {
 	 * @return reference to the SmartObject that fulfills the specified service
 	 */
 	public SmartObject fillService(TimeLine timeLine, String service, int difficulty, String setting){
-		// support backtracking
-		TimeLine _timeLine = timeLine.clone();
 		// check if service is already available
-		SmartObject so = _timeLine.isServiceOffered(service);
+		SmartObject so = timeLine.isServiceOffered(service);
 		if(so != null){
 			return so;
 		}
+		_context.step();
+		_context.count(GeneratorMetrics.Counter.FILL_SERVICE);
+		// prune services that could not be filled before in the same world state
+		NogoodCache nogoods = _context.nogoods();
+		long signature = timeLine.signature();
+		if(nogoods.contains(service, difficulty, setting, signature)){
+			_repeatable = true;
+			return null;
+		}
+		long mark = nogoods.startSearch();
+		so = addServiceObject(timeLine, service, difficulty, setting);
+		if(so == null && _repeatable)
+			nogoods.add(service, difficulty, setting, signature, mark);
+		return so;
+	}
+	
+	/**
+	 * Helper function for fillService that adds an object offering the Service, which is not yet
+	 * offered, without consulting the NogoodCache. Every implementation is tried from the world
+	 * state the search started from. A failure is not repeatable if an implementation failed after
+	 * its own actions changed the world state, since those changes involve random choices. Skipping
+	 * implementations with cost in favour of those without cost depends on the world state only.
+	 * @param timeLine
+	 * @param service
+	 * @param difficulty
+	 * @param setting
+	 * @return
+	 */
+	private SmartObject addServiceObject(TimeLine timeLine, String service, int difficulty, String setting){
+		boolean repeatable = true;
+		// support backtracking
+		TimeLine _timeLine = timeLine.clone();
 		ArrayList<ServiceImplementation> implementations = new ArrayList<ServiceImplementation>();
-		so = _timeLine.couldOfferService(service);
+		SmartObject so = _timeLine.couldOfferService(service);
 		if(so != null){
 			implementations.addAll(_parser.getServiceImplByObj(so.objDesc().id(), service));
 			ArrayList<ServiceImplementation> easyImplements = findNoCostImplementations(implementations, _timeLine, setting, difficulty);
@@ -109,8 +191,10 @@ public class SmartObjectSelector {
 		
 		// find all objects that perform required service
 		ArrayList<ServiceImplementation> tempList = _smap.get(service);
-		if(tempList == null)
+		if(tempList == null){
+			_repeatable = true;
 			return null;
+		}
 		
 		ArrayList<ServiceImplementation> easyImplements = findNoCostImplementations(tempList, _timeLine, setting, difficulty);
 		if(!easyImplements.isEmpty())
@@ -125,6 +209,8 @@ public class SmartObjectSelector {
 		for(int i=0; i<implementations.size(); i++){
 			boolean applicable = true;
 			ServiceImplementation si = implementations.get(i);
+			// the world state this implementation starts from, story actions are not part of it
+			long signature = _timeLine.signature();
 			
 			// enable all actions required by this implementation
 			ArrayList<Integer> actionIds = new ArrayList<Integer>();
@@ -132,7 +218,9 @@ public class SmartObjectSelector {
 				AtomTask a = _timeLine.addStoryAction(_parser.getAtomTaskDescById(actionId), si.service());
 				actionIds.add(a.id());
 				if(!enableAction(_timeLine, a, difficulty, setting)){
+					repeatable &= _repeatable && _timeLine.signature() == signature;
 					applicable = false;
+					_context.count(GeneratorMetrics.Counter.BACKTRACKS);
 					_timeLine = timeLine.clone();
 					break;
 				}
@@ -144,7 +232,7 @@ public class SmartObjectSelector {
 				SmartObject obj = null;
 				ArrayList<SmartObject> objects = _timeLine.containsObjectDescription(_parser.getSmartObjById(si.objectId()));
 				if(!objects.isEmpty()){
-					Collections.shuffle(objects);
+					_context.shuffle(objects);
 					for(SmartObject o : objects){
 						if(_timeLine.satisfiesConstraints(o.id(), si)){
 							obj = o;
@@ -152,18 +240,18 @@ public class SmartObjectSelector {
 						}
 					}
 					if(obj == null){
-						System.out.println("Existing objects did not satisfy constraints failed to fill service "+_parser.getServiceById(service).name()+" using "+si.name());
+						System.err.println("Existing objects did not satisfy constraints failed to fill service "+_parser.getServiceById(service).name()+" using "+si.name());
+						// the objects may have been added while enabling the actions
+						repeatable &= _timeLine.signature() == signature;
+						_context.count(GeneratorMetrics.Counter.BACKTRACKS);
+						_timeLine = timeLine.clone();
 						continue;
 					}
 				}
 				// if no object exists create a new object (or agent)
 				if(obj == null){
 					newObj = true;
-					SmartObjectDescription sod = findBestObject(_parser.getSmartObjById(si.objectId()), setting);
-					if(sod instanceof AgentDescription)
-						obj = new Agent((AgentDescription)sod);
-					else
-						obj = new SmartObject(sod);
+					obj = _timeLine.createObject(findBestObject(_parser.getSmartObjById(si.objectId()), setting));
 				}
 				// for each action determine actor
 				for(int j=0; j<si.actionIds().size(); j++){
@@ -177,8 +265,8 @@ public class SmartObjectSelector {
 						if(actor != null){
 							_timeLine.addActionExistingActor(actionId, actor);
 						}else{
-							ArrayList<AgentDescription> possibleActors = _parser.getAgentDescByType(actorType);
-							Agent act = new Agent(possibleActors.get(0)); //TODO add action distribution mechanism
+							List<AgentDescription> possibleActors = _parser.getAgentDescByType(actorType);
+							Agent act = _timeLine.createAgent(possibleActors.get(0)); //TODO add action distribution mechanism
 							_timeLine.addActionNewActor(actionId, act);
 						}
 					}
@@ -199,6 +287,7 @@ public class SmartObjectSelector {
 			}
 		}
 		
+		_repeatable = repeatable;
 		return null;
 	}
 	
@@ -213,6 +302,7 @@ public class SmartObjectSelector {
 	 * @return
 	 */
 	public SmartObject enableServiceImplementation(TimeLine timeLine, ServiceImplementation si, String service, String setting, int difficulty){
+		_context.step();
 		//support backtracking
 		TimeLine _timeLine = timeLine.clone();
 		boolean applicable = true;
@@ -224,6 +314,7 @@ public class SmartObjectSelector {
 			actionIds.add(a.id());
 			if(!enableAction(_timeLine, a, difficulty, setting)){
 				applicable = false;
+				_context.count(GeneratorMetrics.Counter.BACKTRACKS);
 				_timeLine = timeLine.clone();
 				break;
 			}
@@ -235,7 +326,7 @@ public class SmartObjectSelector {
 			SmartObject obj = null;
 			ArrayList<SmartObject> objects = _timeLine.containsObjectDescription(_parser.getSmartObjById(si.objectId()));
 			if(!objects.isEmpty()){
-				Collections.shuffle(objects);
+				_context.shuffle(objects);
 				for(SmartObject o : objects){
 					if(_timeLine.satisfiesConstraints(o.id(), si)){
 						obj = o;
@@ -243,18 +334,14 @@ public class SmartObjectSelector {
 					}
 				}
 				if(obj == null){
-					System.out.println("Existing objects did not satisfy constraints failed to fill service "+_parser.getServiceById(service).name()+" using "+si.name());
+					System.err.println("Existing objects did not satisfy constraints failed to fill service "+_parser.getServiceById(service).name()+" using "+si.name());
 					return null;
 				}
 			}
 			// if not create new object
 			if(obj == null){
 				newObj = true;
-				SmartObjectDescription sod = findBestObject(_parser.getSmartObjById(si.objectId()), setting);
-				if(sod instanceof AgentDescription)
-					obj = new Agent((AgentDescription)sod);
-				else
-					obj = new SmartObject(sod);
+				obj = _timeLine.createObject(findBestObject(_parser.getSmartObjById(si.objectId()), setting));
 			}
 			// for each action determine actor
 			for(int j=0; j<si.actionIds().size(); j++){
@@ -268,8 +355,8 @@ public class SmartObjectSelector {
 					if(actor != null){
 						_timeLine.addActionExistingActor(actionId, actor);
 					}else{
-						ArrayList<AgentDescription> possibleActors = _parser.getAgentDescByType(actorType);
-						Agent act = new Agent(possibleActors.get(0)); //TODO add action distribution mechanism
+						List<AgentDescription> possibleActors = _parser.getAgentDescByType(actorType);
+						Agent act = _timeLine.createAgent(possibleActors.get(0)); //TODO add action distribution mechanism
 						_timeLine.addActionNewActor(actionId, act);
 					}
 				}
@@ -321,32 +408,16 @@ public class SmartObjectSelector {
 	 * @return reference to selected SmartObjectDescription
 	 */
 	public SmartObjectDescription findBestObject(AbstractSmartObjectDescription asotd, String setting){
-		if(asotd instanceof SmartObjectDescription){
-			return (SmartObjectDescription) asotd;
-		}
-		else {
-			SmartObjectTypeDescription sotd = (SmartObjectTypeDescription) asotd;
-			int score = Integer.MIN_VALUE;
-			SmartObjectDescription sod = null;
-			ArrayList<String> childIds = new ArrayList<String>();
-			for(String child : sotd.childrenIds()){
-				childIds.add(child);
-			}
-			Collections.shuffle(childIds);
-			for(String child : childIds){
-				SmartObjectDescription obj = findBestObject(_parser.getSmartObjById(child), setting);
-				if(obj == null)
-					return null;
-				int tempScore = obj.fitsInSetting(setting);
-				if(tempScore > score){
-					score = tempScore;
-					sod = obj;
-					if(score == 1)
-						break;
-				}
-			}
-			return sod;
+		// descend through the best fitting children, choosing randomly between equally fitting ones
+		while(!(asotd instanceof SmartObjectDescription)){
+			if(asotd == null)
+				return null;
+			List<AbstractSmartObjectDescription> best = _parser.getBestFittingChildren(asotd.id(), setting);
+			if(best.isEmpty())
+				return null;
+			asotd = best.get(_context.nextInt(best.size()));
 		}
+		return (SmartObjectDescription) asotd;
 	}
 	
 	/**
@@ -358,8 +429,54 @@ public class SmartObjectSelector {
 	 * @param difficulty of the scenario
 	 * @return map storing which services will have to be offered by which objects in order to
 	 * offer specified service. If the Service cannot be offered without adding objects null is returned.
+	 * Results are remembered until the scenario changes, so the map is shared and must not be modified.
 	 */
 	public MultiValueTreeMap<String, ServiceImplementation> couldServiceBeOffered(TimeLine timeLine, String service, String setting, int difficulty){
+		long version = timeLine.version();
+		if(_memoContext != timeLine.context() || _memoVersion != version || _memoDifficulty != difficulty 
+				|| (_memoSetting == null ? setting != null : !_memoSetting.equals(setting))){
+			_offerMemo.clear();
+			_memoContext = timeLine.context();
+			_memoVersion = version;
+			_memoSetting = setting;
+			_memoDifficulty = difficulty;
+		}
+		_context.count(GeneratorMetrics.Counter.OFFER_CHECKS);
+		if(_offerMemo.containsKey(service)){
+			_context.count(GeneratorMetrics.Counter.OFFER_MEMO_HITS);
+			return _offerMemo.get(service);
+		}
+		// a Service that (indirectly) requires itself cannot be offered along this path
+		if(!_offerInProgress.add(service)){
+			_offerCycles++;
+			return null;
+		}
+		_context.step();
+		if(GeneratorMetrics.ENABLED)
+			_context.metrics().recordOfferDepth(_offerInProgress.size());
+		int cycles = _offerCycles;
+		MultiValueTreeMap<String, ServiceImplementation> bindings;
+		try {
+			bindings = findOfferBindings(timeLine, service, setting, difficulty);
+		} finally {
+			// also when a limit of the scenario stops the search
+			_offerInProgress.remove(service);
+		}
+		// results that depend on a cut cycle depend on the path along which they were found
+		if(cycles == _offerCycles)
+			_offerMemo.put(service, bindings);
+		return bindings;
+	}
+	
+	/**
+	 * Helper function for couldServiceBeOffered that determines the bindings without memoization
+	 * @param timeLine stores the scenario generated so far
+	 * @param service that needs to be offered
+	 * @param setting of the scenario
+	 * @param difficulty of the scenario
+	 * @return
+	 */
+	private MultiValueTreeMap<String, ServiceImplementation> findOfferBindings(TimeLine timeLine, String service, String setting, int difficulty){
 		if(timeLine.isServiceOffered(service) != null){
 			return new MultiValueTreeMap<String, ServiceImplementation>();
 		}
@@ -424,11 +541,11 @@ public class SmartObjectSelector {
 			temp2 = implementations.get(i+1);
 			 // if current and next different shuffle from start to i (inclusive)
 			if(_comp.compare(temp1, temp2) != 0 ){
-				Collections.shuffle(implementations.subList(start, i+1));
+				_context.shuffle(implementations.subList(start, i+1));
 				start = i+1;
 			}// else if there is no next after this round shuffle from start to i+1 (inclusive)
 			else if((i+1) >= implementations.size()-1){
-				Collections.shuffle(implementations.subList(start, i+2));
+				_context.shuffle(implementations.subList(start, i+2));
 			}
 		}
 	}
@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class supports the hierarchical ordering of Smart Objects. A Smart ObjectType 
@@ -10,19 +11,15 @@ import java.util.ArrayList;
  */
 public class SmartObjectTypeDescription extends AbstractSmartObjectDescription{
 	
-	private ArrayList<String> _childrenIds;
+	private List<String> _childrenIds;
 
 	public SmartObjectTypeDescription(String id, String name, ArrayList<String> serviceIds, ArrayList<String> parentIds, ArrayList<String> childrenIds) {
 		super(id, name, serviceIds, parentIds);
-		_childrenIds = childrenIds;	
+		_childrenIds = immutable(childrenIds);
 	}
 	
-	public ArrayList<String> childrenIds(){
-		ArrayList<String> copy = new ArrayList<String>();
-		for(String id: _childrenIds){
-			copy.add(id);
-		}
-		return copy;
+	public List<String> childrenIds(){
+		return _childrenIds;
 	}
 
 }
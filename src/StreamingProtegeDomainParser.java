@@ -0,0 +1,99 @@
+package scenarioGenerator;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Domain parser for the xml output of Protege that reads the file in a single forward pass using
+ * StAX instead of loading it into a DOM. Only the simple instance currently being read is kept in
+ * memory, which makes it suitable for large ontologies. Produces the same descriptions as the
+ * ProtegeDomainParser.
+ */
+public class StreamingProtegeDomainParser extends ProtegeDomainParser {
+
+	@Override
+	public boolean parseDomain(String file) {
+		InputStream in = null;
+		XMLStreamReader reader = null;
+		try {
+			// setup reader
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			in = new FileInputStream(file);
+			reader = factory.createXMLStreamReader(in);
+
+			// parse instances one at a time
+			while(reader.hasNext()){
+				if(reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("simple_instance")){
+					parseSimpleInstance(reader);
+				}
+			}
+			finishParsing();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			try {
+				if(reader != null)
+					reader.close();
+				if(in != null)
+					in.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the simple instance the reader is positioned on and parses it according to its type
+	 * @param reader positioned on the start of a simple_instance element, is left on its end
+	 * @throws Exception
+	 */
+	private void parseSimpleInstance(XMLStreamReader reader) throws Exception {
+		String id = null;
+		String type = null;
+		TreeMap<String, ArrayList<String>> instanceSlots = new TreeMap<String, ArrayList<String>>(String.CASE_INSENSITIVE_ORDER);
+		// the name of the slot is only known once its slot_reference has been read
+		String slotName = null;
+		ArrayList<String> slotValues = new ArrayList<String>();
+		int depth = 1;
+		while(depth > 0){
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT){
+				String element = reader.getLocalName();
+				if(depth == 1 && element.equals("name") && id == null){
+					id = reader.getElementText();
+				}else if(depth == 1 && element.equals("type") && type == null){
+					type = reader.getElementText();
+				}else if(element.equals("slot_reference") && slotName == null){
+					slotName = reader.getElementText();
+				}else if(element.equals("value")){
+					slotValues.add(reader.getElementText());
+				}else if(element.equals("own_slot_value")){
+					slotName = null;
+					slotValues.clear();
+					depth++;
+				}else
+					depth++;
+			}else if(event == XMLStreamConstants.END_ELEMENT){
+				if(reader.getLocalName().equals("own_slot_value") && slotName != null){
+					for(String value : slotValues){
+						addSlotValue(instanceSlots, slotName, value);
+					}
+				}
+				depth--;
+			}
+		}
+		if(type != null)
+			parseInstance(type, id, instanceSlots);
+	}
+}
@@ -6,14 +6,16 @@ package scenarioGenerator;
  */
 public class Task {
 	
-	public static int TASKCOUNTER;
 	private int _taskId;
 	
 	private TaskDescription _tDescription;
 	
-	public Task(TaskDescription d){
-		_taskId = TASKCOUNTER;
-		TASKCOUNTER++;
+	/**
+	 * @param id unique within the scenario, see ScenarioContext
+	 * @param d
+	 */
+	public Task(int id, TaskDescription d){
+		_taskId = id;
 		_tDescription = d;
 	}
 	
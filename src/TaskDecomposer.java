@@ -2,6 +2,7 @@ package scenarioGenerator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * This class is responsible for decomposing the high-level tasks from the scenario template
@@ -35,18 +36,18 @@ public class TaskDecomposer {
 	 * @return true if the task was successfully decomposed, false otherwise
 	 */
 	public boolean decomposeTask(Task task, int difficulty, String setting, boolean matchPreconditions){
-		// get all possible decompositions
-		ArrayList<String> decompIds = _parser.getTaskDescById(task.taskDesc().id()).getAllTaskDecompositions();
+		_timeline.context().step();
+		// get all possible decompositions, sorted on difficulty range
+		// shuffle decompositions with equal score to promote variability
 		ArrayList<DecompositionSchema> decomps = new ArrayList<DecompositionSchema>();
-		for(String id : decompIds){
-			decomps.add(_parser.getDecompSchemaById(id));
+		for(List<DecompositionSchema> group : _parser.getDecompositionsByScore(task.taskDesc().id(), difficulty)){
+			int start = decomps.size();
+			decomps.addAll(group);
+			_timeline.context().shuffle(decomps.subList(start, decomps.size()));
 		}
 		if(decomps.size() <= 0)
 			return false;
 		
-		// sort possible decompositions on difficulty range
-		sortDecompositions(decomps, difficulty);
-		
 		DecompositionSchema schema = null;
 		// select best possible option
 		// if flag is off, all schemas are acceptable, therefore select first
@@ -56,6 +57,7 @@ public class TaskDecomposer {
 					schema = d;
 					break;
 				}
+				_timeline.context().count(GeneratorMetrics.Counter.BACKTRACKS);
 			}
 			if(schema == null)
 				System.err.println("Could not enable preconditions of any schema for task "+ task.taskDesc().name());
@@ -100,6 +102,7 @@ public class TaskDecomposer {
 	 * @return true if task successfully decomposed, false otherwise
 	 */
 	public boolean decomposeTaskFixed(Task task, int difficulty, String setting, ArrayList<DecompositionSchema> decomps){
+		_timeline.context().step();
 		DecompositionSchema schema = decomps.get(0);
 		if(schema.getTaskId().equalsIgnoreCase(task.taskDesc().id())){
 			// enable preconditions and add required services
@@ -221,12 +224,7 @@ public class TaskDecomposer {
 		for(String obj : schema.getAllObjectPreconds()){
 			if(_timeline.containsObjectDescription(_parser.getSmartObjById(obj)) == null){
 				SmartObjectDescription sod = _objectSelector.findBestObject(_parser.getSmartObjById(obj), setting);
-				SmartObject so;
-				if(sod instanceof AgentDescription)
-					so = new Agent((AgentDescription)sod);
-				else 
-					so = new SmartObject(sod);
-				_timeline.addNewObject(so, false);
+				_timeline.addNewObject(_timeline.createObject(sod), false);
 			}
 				
 		}
@@ -253,11 +251,11 @@ public class TaskDecomposer {
 			temp2 = decomps.get(i+1);
 			 // if current and next different shuffle from start to i (inclusive)
 			if(_comp.compare(temp1, temp2) != 0 ){
-				Collections.shuffle(decomps.subList(start, i+1));
+				_timeline.context().shuffle(decomps.subList(start, i+1));
 				start = i+1;
 			}// else if there is no next after this round shuffle from start to i+1 (inclusive)
 			else if((i+1) >= decomps.size()-1){
-				Collections.shuffle(decomps.subList(start, i+2));
+				_timeline.context().shuffle(decomps.subList(start, i+2));
 			}
 		}
 	}
@@ -1,6 +1,7 @@
 package scenarioGenerator;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a task as described by the domain knowledge. If the task is complex it
@@ -10,13 +11,13 @@ import java.util.ArrayList;
  */
 public class TaskDescription extends DomainConcept {
 
-	private ArrayList<String> _serviceIds;
-	private ArrayList<String> _decompIds;
+	private List<String> _serviceIds;
+	private List<String> _decompIds;
 	
 	public TaskDescription(String id, String name, ArrayList<String> decompIds, ArrayList<String> serviceIds) {
 		super(id, name);
-		_decompIds = decompIds;
-		_serviceIds = serviceIds;
+		_decompIds = immutable(decompIds);
+		_serviceIds = immutable(serviceIds);
 	}
 	
 	/**
@@ -29,18 +30,14 @@ public class TaskDescription extends DomainConcept {
 	/**
 	 * @return all DecompositionSchemas that can be used to decompose this task
 	 */
-	public ArrayList<String> getAllTaskDecompositions(){
-		ArrayList<String> copy = new ArrayList<String>();
-		for(String t : _decompIds){
-			copy.add(t);
-		}
-		return copy;
+	public List<String> getAllTaskDecompositions(){
+		return _decompIds;
 	}
 	
 	/**
 	 * @return all precondtions for this task
 	 */
-	public ArrayList<String> getRequiredServiceIds(){
+	public List<String> getRequiredServiceIds(){
 		return _serviceIds;
 	}
 
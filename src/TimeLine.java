@@ -1,15 +1,25 @@
 package scenarioGenerator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 //import java.util.Iterator;
 //import java.util.Stack;
 //import java.util.TreeSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * This class stores the scenario as generated so far. It contains all the objects, services and
- * actions that together make up the scenario plan.
+ * actions that together make up the scenario plan. 
+ * Clones share their data with the TimeLine they were cloned from; changes made through a clone
+ * are recorded on an UndoTrail and are undone as soon as the original TimeLine is used again,
+ * unless the clone has been merged back. Only the TimeLine that was cloned or merged last can be
+ * changed without discarding the changes of its clones.
  */
 public class TimeLine {
 
@@ -17,28 +27,91 @@ public class TimeLine {
 	private ArrayList<AtomTask> _story;
 	private ArrayList<SmartObject> _initObj;
 	private ArrayList<SmartObject> _dynamicObj;
-	private MultiValueTreeMap<Integer, SmartObject> _actionObj; 
-	private MultiValueTreeMap<Integer, String> _actionService; 
-	private TreeMap<Integer, Agent> _actionActor;
-	private TreeMap<Integer, String> _actionGoal;
+	private IntMap<ArrayList<SmartObject>> _actionObj; 
+	private IntMap<ArrayList<String>> _actionService; 
+	private IntMap<Agent> _actionActor;
+	private IntMap<String> _actionGoal;
 	private DomainParser _parser;
-	private TreeMap<String, SmartObject> _services;
-	private TreeMap<String, Integer> _serviceDifficulty;
-	private MultiValueTreeMap<Integer, String> _serviceImplementations;
+	private ScenarioContext _context;
+	// offered Services and their difficulty by Service symbol (see DomainParser.getServiceSymbol)
+	private IntMap<SmartObject> _services;
+	private IntMap<Integer> _serviceDifficulty;
+	// offered Services by (case insensitive) id of every Service they inherit from
+	private TreeMap<String, TreeMap<String, SmartObject>> _servicesByAncestor;
+	// positions (see ServiceImplementation.bit) of the ServiceImplementations offered by every object
+	private IntMap<BitSet> _serviceImplementations;
+	// indexes on the objects in the game world, init objects and dynamic objects are kept apart
+	// so queries return them in the same order as the object lists
+	private IntMap<SmartObject> _objectsById;
+	// position of every object in the object lists (init objects even, dynamic objects odd), the
+	// signature uses it instead of the id so equal world states built with other ids match
+	private IntMap<Integer> _slots;
+	private MultiValueTreeMap<String, SmartObject> _initObjByDesc;
+	private MultiValueTreeMap<String, SmartObject> _dynamicObjByDesc;
+	private MultiValueTreeMap<String, Agent> _initAgentsByType;
+	private MultiValueTreeMap<String, Agent> _dynamicAgentsByType;
+	private UndoTrail _trail;
+	private int _level;
 	
 	public TimeLine(DomainParser parser){
+		this(parser, new ScenarioContext());
+	}
+	
+	/**
+	 * @param parser
+	 * @param context of the scenario this TimeLine stores
+	 */
+	public TimeLine(DomainParser parser, ScenarioContext context){
 		_parser = parser;
+		_context = context;
 		_planning = new ArrayList<Task>();
 		_story = new ArrayList<AtomTask>();
 		_initObj = new ArrayList<SmartObject>();
 		_dynamicObj = new ArrayList<SmartObject>();
-		_actionObj = new MultiValueTreeMap<Integer, SmartObject>();
-		_actionService = new MultiValueTreeMap<Integer, String>();
-		_actionActor = new TreeMap<Integer, Agent>();
-		_actionGoal = new TreeMap<Integer, String>();
-		_services = new TreeMap<String, SmartObject>();
-		_serviceDifficulty = new TreeMap<String, Integer>();
-		_serviceImplementations = new MultiValueTreeMap<Integer, String>();
+		_actionObj = new IntMap<ArrayList<SmartObject>>();
+		_actionService = new IntMap<ArrayList<String>>();
+		_actionActor = new IntMap<Agent>();
+		_actionGoal = new IntMap<String>();
+		_services = new IntMap<SmartObject>();
+		_serviceDifficulty = new IntMap<Integer>();
+		_servicesByAncestor = new TreeMap<String, TreeMap<String, SmartObject>>(String.CASE_INSENSITIVE_ORDER);
+		_serviceImplementations = new IntMap<BitSet>();
+		_objectsById = new IntMap<SmartObject>();
+		_slots = new IntMap<Integer>();
+		_initObjByDesc = new MultiValueTreeMap<String, SmartObject>(String.CASE_INSENSITIVE_ORDER);
+		_dynamicObjByDesc = new MultiValueTreeMap<String, SmartObject>(String.CASE_INSENSITIVE_ORDER);
+		_initAgentsByType = new MultiValueTreeMap<String, Agent>(String.CASE_INSENSITIVE_ORDER);
+		_dynamicAgentsByType = new MultiValueTreeMap<String, Agent>(String.CASE_INSENSITIVE_ORDER);
+		_trail = new UndoTrail(this, context);
+		_level = 0;
+	}
+	
+	/**
+	 * Creates a handle on the data of the specified TimeLine
+	 * @param other
+	 */
+	private TimeLine(TimeLine other){
+		_parser = other._parser;
+		_context = other._context;
+		_planning = other._planning;
+		_story = other._story;
+		_initObj = other._initObj;
+		_dynamicObj = other._dynamicObj;
+		_actionObj = other._actionObj;
+		_actionService = other._actionService;
+		_actionActor = other._actionActor;
+		_actionGoal = other._actionGoal;
+		_services = other._services;
+		_serviceDifficulty = other._serviceDifficulty;
+		_servicesByAncestor = other._servicesByAncestor;
+		_serviceImplementations = other._serviceImplementations;
+		_objectsById = other._objectsById;
+		_slots = other._slots;
+		_initObjByDesc = other._initObjByDesc;
+		_dynamicObjByDesc = other._dynamicObjByDesc;
+		_initAgentsByType = other._initAgentsByType;
+		_dynamicAgentsByType = other._dynamicAgentsByType;
+		_trail = other._trail;
 	}
 	
 	/**
@@ -48,12 +121,23 @@ public class TimeLine {
 	 * @return reference to the object that can offer the Service, null if no object could be found
 	 */
 	public SmartObject couldOfferService(String service){
-		ArrayList<SmartObject> allObj = new ArrayList<SmartObject>();
-		allObj.addAll(_initObj);
-		allObj.addAll(_dynamicObj);
+		enter();
 		// consider all available objects
-		for(SmartObject so : allObj){
-			ArrayList<ServiceImplementation> options = _parser.getServiceImplByObj(so.objDesc().id(), service);
+		SmartObject so = findOfferingObject(_initObj, service);
+		if(so == null)
+			so = findOfferingObject(_dynamicObj, service);
+		return so;
+	}
+	
+	/**
+	 * Helper function for couldOfferService
+	 * @param objects to consider
+	 * @param service
+	 * @return first object that could offer the Service, null if there is none
+	 */
+	private SmartObject findOfferingObject(ArrayList<SmartObject> objects, String service){
+		for(SmartObject so : objects){
+			List<ServiceImplementation> options = _parser.getServiceImplByObj(so.objDesc().id(), service);
 			// check if the ServiceImplementation is compatible with the implementations already
 			// offered by this object
 			for(ServiceImplementation si : options){
@@ -70,13 +154,13 @@ public class TimeLine {
 	 * @return the object that offers the Service, null if the Service is not offered
 	 */
 	public SmartObject isServiceOffered(String serviceId){
-		SmartObject so = _services.get(serviceId);
+		enter();
+		SmartObject so = _services.get(_parser.getServiceSymbol(serviceId));
 		if(so == null){
-			Service service = _parser.getServiceById(serviceId);
-			for(String sId : _services.keySet()){
-				if(_parser.isServiceChild(service, sId))
-					so = _services.get(sId);
-			}
+			// of all offered child Services the one with the last id wins
+			TreeMap<String, SmartObject> children = _servicesByAncestor.get(serviceId);
+			if(children != null && !children.isEmpty())
+				so = children.lastEntry().getValue();
 		}
 		return so;
 	}
@@ -87,11 +171,12 @@ public class TimeLine {
 	 * @return the instantiated Tasks that were added to the planning
 	 */
 	public ArrayList<Task> addTemplate(ArrayList<TaskDescription> descriptions){
+		enter();
 		ArrayList<Task> tasks = new ArrayList<Task>();
 		for(TaskDescription d: descriptions){
-			Task task = new Task(d);
+			Task task = new Task(_context.nextTaskId(), d);
 			tasks.add(task);
-			_planning.add(task);
+			add(_planning, task);
 		}
 		return tasks;
 	}
@@ -104,8 +189,9 @@ public class TimeLine {
 	 * @param obj
 	 */
 	public void addActionExsistingObject(int actionId, String service, SmartObject obj){
-		_actionObj.put(actionId, obj);
-		_actionService.put(actionId, service);
+		enter();
+		add(_actionObj, actionId, obj);
+		add(_actionService, actionId, service);
 	}
 	
 	/**
@@ -117,14 +203,10 @@ public class TimeLine {
 	 * @param init flag to indicate if this is a static object or not
 	 */
 	public void addActionNewObject(int actionId, SmartObject so, String service, boolean init){
-		if(init){
-			_initObj.add(so);
-		}
-		else{
-			_dynamicObj.add(so);
-		}
-		_actionObj.put(actionId, so);
-		_actionService.put(actionId, service);
+		enter();
+		addObject(so, init);
+		add(_actionObj, actionId, so);
+		add(_actionService, actionId, service);
 	}
 	
 	/**
@@ -135,22 +217,107 @@ public class TimeLine {
 	 * @return
 	 */
 	public AtomTask addStoryAction(AtomTaskDescription action, String service){
-		AtomTask aTask = new AtomTask(action);
-		_story.add(aTask);
-		_actionGoal.put(aTask.id(), service);
+		enter();
+		AtomTask aTask = new AtomTask(_context.nextTaskId(), action);
+		add(_story, aTask);
+		put(_actionGoal, aTask.id(), service);
 		return aTask;
 	}
 	
+	/**
+	 * Instantiates the description as a new SmartObject, or as a new Agent if it describes an
+	 * agent. The object is not added to the game world.
+	 * @param sod
+	 * @return the new object, with an id that is unique within the scenario
+	 */
+	public SmartObject createObject(SmartObjectDescription sod){
+		if(sod instanceof AgentDescription)
+			return new Agent(_context.nextObjectId(), (AgentDescription)sod);
+		return new SmartObject(_context.nextObjectId(), sod);
+	}
+	
+	/**
+	 * Instantiates the description as a new Agent. The agent is not added to the game world.
+	 * @param ad
+	 * @return the new agent, with an id that is unique within the scenario
+	 */
+	public Agent createAgent(AgentDescription ad){
+		return new Agent(_context.nextObjectId(), ad);
+	}
+	
+	/**
+	 * @return the context of the scenario stored in this TimeLine
+	 */
+	public ScenarioContext context(){
+		return _context;
+	}
+	
 	/**
 	 * Adds an object to the game world
 	 * @param so
 	 * @param init flag to indicate whether the object is static or not
 	 */
 	public void addNewObject(SmartObject so, boolean init){
-		if(init)
-			_initObj.add(so);
-		else
-			_dynamicObj.add(so);
+		enter();
+		addObject(so, init);
+	}
+	
+	/**
+	 * Helper function that adds an object to the game world and to the indexes on the objects
+	 * @param so
+	 * @param init flag to indicate whether the object is static or not
+	 */
+	private void addObject(SmartObject so, boolean init){
+		ArrayList<SmartObject> objects = init ? _initObj : _dynamicObj;
+		int slot = objects.size() * 2 + (init ? 0 : 1);
+		add(objects, so);
+		put(_objectsById, so.id(), so);
+		put(_slots, so.id(), slot);
+		toggle(component(slot, so.objDesc().id(), init ? 1 : 2));
+		// register the object under its description and all descriptions it inherits from
+		MultiValueTreeMap<String, SmartObject> byDesc = init ? _initObjByDesc : _dynamicObjByDesc;
+		for(String descId : ancestorIds(so.objDesc(), false)){
+			put(byDesc, descId, so);
+		}
+		// register agents under their type and all types they inherit from
+		if(so instanceof Agent){
+			MultiValueTreeMap<String, Agent> byType = init ? _initAgentsByType : _dynamicAgentsByType;
+			TreeSet<String> types = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			for(String descId : ancestorIds(so.objDesc(), true)){
+				AbstractSmartObjectDescription desc = _parser.getSmartObjById(descId);
+				if(desc instanceof AgentTypeDescription)
+					types.add(((AgentTypeDescription) desc).type());
+				else if(desc instanceof AgentDescription)
+					types.add(((AgentDescription) desc).type());
+			}
+			for(String type : types){
+				put(byType, type, (Agent) so);
+			}
+		}
+	}
+	
+	/**
+	 * Helper function that collects the ids of the description and all descriptions it (indirectly)
+	 * inherits from
+	 * @param desc
+	 * @param agentsOnly only follow inheritance through agent descriptions
+	 * @return the ids, without duplicates
+	 */
+	private TreeSet<String> ancestorIds(AbstractSmartObjectDescription desc, boolean agentsOnly){
+		TreeSet<String> ids = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		ids.add(desc.id());
+		ArrayList<AbstractSmartObjectDescription> open = new ArrayList<AbstractSmartObjectDescription>();
+		open.add(desc);
+		while(!open.isEmpty()){
+			for(String parentId : open.remove(open.size()-1).parentIds()){
+				AbstractSmartObjectDescription parent = _parser.getSmartObjById(parentId);
+				if(agentsOnly && !(parent instanceof AgentTypeDescription || parent instanceof AgentDescription))
+					continue;
+				if(ids.add(parentId) && parent != null)
+					open.add(parent);
+			}
+		}
+		return ids;
 	}
 	
 	/**
@@ -159,14 +326,8 @@ public class TimeLine {
 	 * @return true if the object is present, false otherwise
 	 */
 	public boolean containsObject(int objId){
-		ArrayList<SmartObject> allObj = new ArrayList<SmartObject>();
-		allObj.addAll(_initObj);
-		allObj.addAll(_dynamicObj);
-		for(SmartObject so : allObj){
-			if(so.id() == objId)
-				return true;
-		}
-		return false; 
+		enter();
+		return _objectsById.containsKey(objId);
 	}
 	
 	/**
@@ -176,37 +337,13 @@ public class TimeLine {
 	 * @return all objects present that are instatiations of the description
 	 */
 	public ArrayList<SmartObject> containsObjectDescription(AbstractSmartObjectDescription objDesc){
+		enter();
 		ArrayList<SmartObject> objects = new ArrayList<SmartObject>();
-		ArrayList<SmartObject> allObj = new ArrayList<SmartObject>();
-		allObj.addAll(_initObj);
-		allObj.addAll(_dynamicObj);
-		for(SmartObject so : allObj){
-			if(so.objDesc().equals(objDesc))
-				objects.add(so);
-			else if(isParentObject(objDesc, so.objDesc()))
-				objects.add(so);
-		}
-		return objects; 
-	}
-	
-	/**
-	 * Helper function that checks if the description specified as child actually inherits from
-	 * the description specified as parent
-	 * @param parent
-	 * @param child
-	 * @return true if there the descriptions are related by inheritance, false otherwise
-	 */
-	private boolean isParentObject(AbstractSmartObjectDescription parent, AbstractSmartObjectDescription child){
-		for(String id : child.parentIds()){
-			if(id.equalsIgnoreCase(parent.id()))
-				return true;
-		}
-		for(String id : child.parentIds()){
-			AbstractSmartObjectDescription obj = _parser.getSmartObjById(id);
-			if(isParentObject(parent, obj))
-				return true;
-		}
-		return false;
+		if(_initObjByDesc.containsKey(objDesc.id()))
+			objects.addAll(_initObjByDesc.get(objDesc.id()));
+		if(_dynamicObjByDesc.containsKey(objDesc.id()))
+			objects.addAll(_dynamicObjByDesc.get(objDesc.id()));
+		return objects;
 	}
 	
 	/**
@@ -216,20 +353,21 @@ public class TimeLine {
 	 * @return the instantiations of the sub Tasks as added to the planning
 	 */
 	public ArrayList<Task> decomposeTask(int taskID, DecompositionSchema decomp){
+		enter();
 		ArrayList<Task> tasks = new ArrayList<Task>();
 		for(int i=0; i<_planning.size(); i++){
 			if(_planning.get(i).id() == taskID){
 				// remove task that is to be decomposed
-				_planning.remove(i);
+				final Task decomposed = _planning.remove(i);
 				// determine tasks to be added based on decomposition
 				for(String id: decomp.getDecomposition()){
 					TaskDescription desc = _parser.getTaskDescById(id);
 					Task task;
 					if(desc.isComplexTask()){
-						task = new Task(_parser.getTaskDescById(id));
+						task = new Task(_context.nextTaskId(), _parser.getTaskDescById(id));
 					}
 					else{
-						task = new AtomTask((AtomTaskDescription)desc);
+						task = new AtomTask(_context.nextTaskId(), (AtomTaskDescription)desc);
 					}
 					tasks.add(task);
 				}
@@ -247,150 +385,377 @@ public class TimeLine {
 					_planning.set(j, tasks.get(taskIndex) );
 					taskIndex++;
 				}
+				final int index = i;
+				final int added = number;
+				_trail.record(new UndoTrail.Entry(){
+					public void undo(){
+						_planning.subList(index, index+added).clear();
+						_planning.add(index, decomposed);
+					}
+				});
 				return tasks;
 			}
 		}
 		return null;
 	}
 	
+	/**
+	 * Takes a checkpoint of the scenario generated so far. The clone shares its data with this
+	 * TimeLine, so this is a constant time operation. Changes made through the clone are rolled
+	 * back as soon as this TimeLine is used again, unless the clone is merged into it first.
+	 * Clones are strictly nested (last in, first out): using, cloning or merging into this
+	 * TimeLine discards the clone and every TimeLine cloned from it, after which using them throws
+	 * an IllegalStateException. Unlike a copy, a clone can therefore not be kept as an independent
+	 * alternative next to this TimeLine.
+	 * @return TimeLine that can be changed without affecting this TimeLine, until this TimeLine
+	 * is used again
+	 */
 	public TimeLine clone(){
-		TimeLine clone = new TimeLine(_parser);
-		for(Task t : _planning)
-			clone._planning.add(t);
-		for(AtomTask t: _story)
-			clone._story.add(t);
-		for(SmartObject obj : _initObj)
-			clone._initObj.add(obj);
-		for(SmartObject obj : _dynamicObj)
-			clone._dynamicObj.add(obj);
-		for(Integer key : _actionObj.keySet())
-			clone._actionObj.put(key, _actionObj.get(key));
-		for(Integer key : _actionService.keySet())
-			clone._actionService.put(key, _actionService.get(key));
-		for(Integer key : _actionActor.keySet())
-			clone._actionActor.put(key, _actionActor.get(key));
-		for(Integer key : _actionGoal.keySet())
-			clone._actionGoal.put(key, _actionGoal.get(key));
-		for(String key : _services.keySet())
-			clone._services.put(key, _services.get(key));
-		for(String key : _serviceDifficulty.keySet())
-			clone._serviceDifficulty.put(key, _serviceDifficulty.get(key));
-		for(Integer key : _serviceImplementations.keySet())
-			clone._serviceImplementations.put(key, _serviceImplementations.get(key));
+		TimeLine clone = new TimeLine(this);
+		clone._level = _trail.push(this, _level, clone);
+		_context.count(GeneratorMetrics.Counter.CLONES);
 		return clone;
 	}
 	
 	/**
-	 * Adds all the information stored in the specified TimeLine to the current TimeLine
+	 * Keeps all the changes made through the specified TimeLine, which must have been cloned
+	 * (directly or indirectly) from the current TimeLine and not been discarded. The changes of
+	 * TimeLines cloned from the other TimeLine are rolled back first, unless they were merged into
+	 * it. Afterwards the other TimeLine and all TimeLines cloned between this TimeLine and it are
+	 * discarded, see clone.
 	 * @param other
+	 * @throws IllegalArgumentException if the other TimeLine was not cloned from this TimeLine
+	 * @throws IllegalStateException if the other TimeLine has been discarded
 	 */
 	public void merge(TimeLine other){
-		merge(_planning, other._planning);
-		merge(_story, other._story);
-		merge(_initObj, other._initObj);
-		merge(_dynamicObj, other._dynamicObj);
-		merge(_actionObj, other._actionObj);
-		merge(_actionService, other._actionService);
-		merge(_actionActor, other._actionActor);
-		merge(_actionGoal, other._actionGoal);
-		merge(_services, other._services);
-		merge(_serviceDifficulty, other._serviceDifficulty);
-		merge(_serviceImplementations, other._serviceImplementations);
-	}
-	
-	/**
-	 * Helper function to add all values from the other map to the goal map
-	 * @param goal
-	 * @param other
+		if(other._trail != _trail || other._level <= _level || !_trail.isLive(this, _level))
+			throw new IllegalArgumentException("Only a TimeLine cloned from this TimeLine can be merged into it");
+		_trail.commit(other, other._level, _level);
+		_context.count(GeneratorMetrics.Counter.MERGES);
+	}
+	
+	/**
+	 * @return number that changes whenever the scenario stored in this TimeLine changes, as seen
+	 * through this TimeLine. Can be used to check if results derived from the scenario are still valid.
 	 */
-	private <K, V> void merge(MultiValueTreeMap<K, V> goal, MultiValueTreeMap<K, V> other){
-		for(K key : other.keySet()){
-			if(!goal.containsKey(key))
-				goal.put(key, other.get(key));
-			else{
-				ArrayList<V> otherValues = other.get(key);
-				ArrayList<V> ownValues = goal.get(key);
-				for(V value : otherValues)
-					if(!ownValues.contains(value))
-						ownValues.add(value);
-				}
-		}
+	public long version(){
+		enter();
+		return _context.version();
 	}
 	
 	/**
-	 * Helper function to add all values from the other list to the goal list
-	 * @param goal
-	 * @param other
+	 * @return signature of the world state as seen through this TimeLine: the objects, the
+	 * offered Services and the ServiceImplementations bound to every object. Objects are
+	 * identified by their description and their position in the object lists, not by their id, so
+	 * equal world states have equal signatures, regardless of the ids handed out or the changes
+	 * that were undone since. The signature is a 64 bit hash, so different world states have equal
+	 * signatures with a probability of about 2^-64 per pair: pruning by signature (see NogoodCache)
+	 * is probabilistic.
+	 */
+	public long signature(){
+		enter();
+		return _context.signature();
+	}
+	
+	/**
+	 * Helper function to add a component to the signature of the world state, or remove it if it
+	 * was added before, and record how to undo this
+	 * @param component
 	 */
-	private <V> void merge(ArrayList<V> goal, ArrayList<V> other){
-		for(V value : other){
-			if(!goal.contains(value))
-				goal.add(value);
+	private void toggle(final long component){
+		_context.toggleSignature(component);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				_context.toggleSignature(component);
+			}
+		});
+	}
+	
+	/**
+	 * Helper function that determines how an object is identified in the signature
+	 * @param objId
+	 * @return the position of the object in the object lists
+	 * @throws IllegalArgumentException if the object was not added to the game world
+	 */
+	private int slot(int objId){
+		Integer slot = _slots.get(objId);
+		if(slot == null)
+			throw new IllegalArgumentException("Object "+objId+" is not part of the game world");
+		return slot;
+	}
+	
+	/**
+	 * Helper function that hashes a part of the world state to a signature component
+	 * @param slot of the object, see slot
+	 * @param id of a description or Service, can be null
+	 * @param kind
+	 * @return the component
+	 */
+	private static long component(int slot, String id, int kind){
+		long h = ((long) (id != null ? id.hashCode() : 0) << 32) | (slot & 0xffffffffL);
+		h ^= kind * 0x9e3779b97f4a7c15L;
+		// mix the bits (splitmix64 finaliser)
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
+	}
+	
+	/**
+	 * Makes this TimeLine the current one, undoing all changes of clones that were not merged
+	 */
+	private void enter(){
+		_trail.activate(this, _level);
+	}
+	
+	/**
+	 * Helper function to add a value to a list and record how to undo this
+	 * @param list
+	 * @param value
+	 */
+	private <V> void add(final ArrayList<V> list, V value){
+		list.add(value);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				list.remove(list.size() - 1);
+			}
+		});
+	}
+	
+	/**
+	 * Helper function to add a value to the list stored under a key and record how to undo this
+	 * @param map
+	 * @param key
+	 * @param value
+	 */
+	private <V> void add(final IntMap<ArrayList<V>> map, final int key, V value){
+		ArrayList<V> list = map.get(key);
+		if(list == null){
+			list = new ArrayList<V>();
+			map.put(key, list);
 		}
+		list.add(value);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				ArrayList<V> list = map.get(key);
+				list.remove(list.size() - 1);
+				if(list.isEmpty())
+					map.remove(key);
+			}
+		});
 	}
 	
 	/**
-	 * Helper function to add all values from the other map to the goal map
-	 * @param goal
-	 * @param other
+	 * Helper function to set a bit in the bitset stored under a key and record how to undo this
+	 * @param map
+	 * @param key
+	 * @param bit
 	 */
-	private <K,V> void merge(TreeMap<K,V> goal, TreeMap<K,V> other){
-		for(K key : other.keySet()){
-			goal.put(key, other.get(key));
+	private void set(final IntMap<BitSet> map, final int key, final int bit){
+		BitSet bits = map.get(key);
+		if(bits == null){
+			bits = new BitSet();
+			map.put(key, bits);
 		}
+		if(bits.get(bit))
+			return;
+		bits.set(bit);
+		toggle(component(slot(key), null, bit + 4));
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				BitSet bits = map.get(key);
+				bits.clear(bit);
+				if(bits.isEmpty())
+					map.remove(key);
+			}
+		});
+	}
+	
+	/**
+	 * Helper function to store a value in a map and record how to undo this
+	 * @param map
+	 * @param key
+	 * @param value
+	 */
+	private <V> void put(final IntMap<V> map, final int key, V value){
+		final V old = map.put(key, value);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				if(old != null)
+					map.put(key, old);
+				else
+					map.remove(key);
+			}
+		});
+	}
+	
+	/**
+	 * Helper function to add a value to a map and record how to undo this
+	 * @param map
+	 * @param key
+	 * @param value
+	 */
+	private <K, V> void put(final MultiValueTreeMap<K, V> map, final K key, V value){
+		map.put(key, value);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				map.removeLast(key);
+			}
+		});
+	}
+	
+	/**
+	 * Helper function to store a value in a map and record how to undo this
+	 * @param map
+	 * @param key
+	 * @param value
+	 */
+	private <K, V> void put(final TreeMap<K, V> map, final K key, V value){
+		final boolean existed = map.containsKey(key);
+		final V old = map.put(key, value);
+		_trail.record(new UndoTrail.Entry(){
+			public void undo(){
+				if(existed)
+					map.put(key, old);
+				else
+					map.remove(key);
+			}
+		});
 	}
 	
 	/**
 	 * @return the scenario in a readable layout
 	 */
 	public String printScenario(){
-		String scenario = "";
-		scenario += "Planning: \r\n";
+		StringBuilder scenario = new StringBuilder();
+		try {
+			printScenario(scenario);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return scenario.toString();
+	}
+	
+	/**
+	 * Writes the scenario in a readable layout
+	 * @param out
+	 * @throws IOException if writing fails
+	 */
+	public void printScenario(Appendable out) throws IOException{
+		enter();
+		out.append("Planning: \r\n");
 		for(Task t : _planning){
-			String objects = "";
-			if(_actionObj.get(t.id()) != null){
-				objects+=" using ";
-				for(int i=0; i<_actionObj.get(t.id()).size(); i++){
-					SmartObject so = _actionObj.get(t.id()).get(i);
-					String service = _parser.getServiceById(_actionService.get(t.id()).get(i)).name();
-					objects += so.objDesc().name()+"("+so.id() +")"+" for "+ service +", ";
-				}
-			}
-			scenario += t.taskDesc().name() +  objects + "\r\n";
+			out.append(t.taskDesc().name());
+			printObjects(out, t.id());
+			out.append("\r\n");
 		}
-		scenario += "\r\n Story: \r\n";
-		Collections.reverse(_story);
-		for(AtomTask a : _story){
-			String objects = "";
-			if(_actionObj.get(a.id()) != null){
-				objects += " using ";
-				for(int i=0; i<_actionObj.get(a.id()).size(); i++){
-					SmartObject so = _actionObj.get(a.id()).get(i);
-					String service = _parser.getServiceById(_actionService.get(a.id()).get(i)).name();
-					objects += so.objDesc().name()+"("+so.id() +")"+ " for "+ service +", ";
-				}
-			}
-			String actor ="";
-			if(_actionActor.get(a.id()) != null)
-				actor += _actionActor.get(a.id()).getAgentDesc().name()+"("+_actionActor.get(a.id()).id() +")";
-			String goal ="";
+		out.append("\r\n Story: \r\n");
+		for(int s=_story.size()-1; s>=0; s--){
+			AtomTask a = _story.get(s);
+			Agent actor = _actionActor.get(a.id());
+			if(actor != null)
+				out.append(actor.getAgentDesc().name()).append("(").append(Integer.toString(actor.id())).append(")");
+			out.append(" performs ").append(a.actionDesc().name());
 			if(_actionGoal.get(a.id()) != null)
-				goal += " to obtain " +  _parser.getServiceById(_actionGoal.get(a.id())).name();
-			scenario += actor + " performs " + a.actionDesc().name() + goal + objects + "\r\n";
+				out.append(" to obtain ").append(_parser.getServiceById(_actionGoal.get(a.id())).name());
+			printObjects(out, a.id());
+			out.append("\r\n");
 		}
-		scenario += "\r\n Init Objects: \r\n";
+		out.append("\r\n Init Objects: \r\n");
 		for(SmartObject so : _initObj){
-			scenario += so.objDesc().name() +"("+so.id()+")"+ "\r\n";
+			out.append(so.objDesc().name()).append("(").append(Integer.toString(so.id())).append(")").append("\r\n");
 		}
-		scenario += "\r\n Dynamic Objects: \r\n";
+		out.append("\r\n Dynamic Objects: \r\n");
 		for(SmartObject so : _dynamicObj){
-			scenario += so.objDesc().name() +"("+so.id()+")"+ "\r\n";
+			out.append(so.objDesc().name()).append("(").append(Integer.toString(so.id())).append(")").append("\r\n");
 		}
-		scenario += "\r\n Services: \r\n";
-		for(String serviceId : _services.keySet()){
-			scenario += _services.get(serviceId).objDesc().name()+" offers "+ _parser.getServiceById(serviceId).name() +" at level: "+_serviceDifficulty.get(serviceId)+"\r\n";
+		out.append("\r\n Services: \r\n");
+		for(int service : offeredServices()){
+			out.append(_services.get(service).objDesc().name()).append(" offers ").append(_parser.getServiceBySymbol(service).name());
+			out.append(" at level: ").append(String.valueOf(_serviceDifficulty.get(service))).append("\r\n");
+		}
+	}
+	
+	/**
+	 * Hands the scenario to the exporter as structured records, in the order of printScenario
+	 * @param out
+	 * @throws IOException if writing fails
+	 */
+	public void export(ScenarioExporter out) throws IOException{
+		enter();
+		for(Task t : _planning){
+			out.planningTask(t, usedObjects(t.id()), usedServices(t.id()));
+		}
+		for(int s=_story.size()-1; s>=0; s--){
+			AtomTask a = _story.get(s);
+			Service goal = _actionGoal.get(a.id()) != null ? _parser.getServiceById(_actionGoal.get(a.id())) : null;
+			out.storyAction(a, _actionActor.get(a.id()), goal, usedObjects(a.id()), usedServices(a.id()));
+		}
+		for(SmartObject so : _initObj){
+			out.initObject(so);
+		}
+		for(SmartObject so : _dynamicObj){
+			out.dynamicObject(so);
+		}
+		for(int service : offeredServices()){
+			out.offeredService(_parser.getServiceBySymbol(service), _services.get(service), _serviceDifficulty.get(service));
+		}
+	}
+	
+	/**
+	 * Helper function for printScenario and export
+	 * @return the symbols of the offered Services, ordered by the ids of the Services
+	 */
+	private Collection<Integer> offeredServices(){
+		TreeMap<String, Integer> services = new TreeMap<String, Integer>();
+		for(int service : _services.keys()){
+			services.put(_parser.getServiceBySymbol(service).id(), service);
+		}
+		return services.values();
+	}
+	
+	/**
+	 * Helper function for export
+	 * @param taskId
+	 * @return the objects used by the task
+	 */
+	private List<SmartObject> usedObjects(int taskId){
+		ArrayList<SmartObject> objects = _actionObj.get(taskId);
+		return objects != null ? Collections.unmodifiableList(objects) : Collections.<SmartObject>emptyList();
+	}
+	
+	/**
+	 * Helper function for export
+	 * @param taskId
+	 * @return the Services for which the objects used by the task are used
+	 */
+	private List<Service> usedServices(int taskId){
+		ArrayList<String> serviceIds = _actionService.get(taskId);
+		if(serviceIds == null)
+			return Collections.emptyList();
+		ArrayList<Service> services = new ArrayList<Service>(serviceIds.size());
+		for(String serviceId : serviceIds){
+			services.add(_parser.getServiceById(serviceId));
+		}
+		return services;
+	}
+	
+	/**
+	 * Helper function for printScenario that writes the objects used by a task
+	 * @param out
+	 * @param taskId
+	 * @throws IOException
+	 */
+	private void printObjects(Appendable out, int taskId) throws IOException{
+		ArrayList<SmartObject> objects = _actionObj.get(taskId);
+		if(objects == null)
+			return;
+		out.append(" using ");
+		for(int i=0; i<objects.size(); i++){
+			SmartObject so = objects.get(i);
+			String service = _parser.getServiceById(_actionService.get(taskId).get(i)).name();
+			out.append(so.objDesc().name()).append("(").append(Integer.toString(so.id())).append(")").append(" for ").append(service).append(", ");
 		}
-		return scenario;
 	}
 
 	/**
@@ -399,7 +764,8 @@ public class TimeLine {
 	 * @param actor
 	 */
 	public void addActionExistingActor(int actionId, Agent actor) {
-		_actionActor.put(actionId, actor);		
+		enter();
+		put(_actionActor, actionId, actor);
 	}
 
 	/**
@@ -408,9 +774,9 @@ public class TimeLine {
 	 * @param actor
 	 */
 	public void addActionNewActor(int actionId, Agent actor) {
-		_dynamicObj.add(actor);
-		_actionActor.put(actionId, actor);
-		
+		enter();
+		addObject(actor, false);
+		put(_actionActor, actionId, actor);
 	}
 
 	/**
@@ -420,18 +786,11 @@ public class TimeLine {
 	 * correct type
 	 */
 	public Agent getAgentByType(String actorType) {
-		ArrayList<SmartObject> allObj = new ArrayList<SmartObject>();
-		allObj.addAll(_initObj);
-		allObj.addAll(_dynamicObj);
-		for(SmartObject so: allObj){
-			if(so instanceof Agent){
-				Agent agent = (Agent) so;
-				if(agent.getAgentDesc().type().equalsIgnoreCase(actorType))
-					return agent;
-				else if(_parser.checkParentDescriptions(agent.getAgentDesc(), actorType))
-					return agent;
-			}
-		}
+		enter();
+		if(_initAgentsByType.containsKey(actorType))
+			return _initAgentsByType.get(actorType).get(0);
+		if(_dynamicAgentsByType.containsKey(actorType))
+			return _dynamicAgentsByType.get(actorType).get(0);
 		return null;
 	}
 
@@ -440,14 +799,32 @@ public class TimeLine {
 	 * ServiceImplementation at the specified difficulty level
 	 * @param serviceId
 	 * @param serviceImplId
-	 * @param obj
+	 * @param obj that has been added to the game world
 	 * @param difficulty
+	 * @throws IllegalArgumentException if the object was not added to the game world or the
+	 * Service is not part of the domain
 	 */
 	public void addServiceObject(String serviceId, String serviceImplId, SmartObject obj, int difficulty) {
-		_services.put(serviceId, obj);
-		_serviceDifficulty.put(serviceId, difficulty);
-		_serviceImplementations.put(obj.id(), serviceImplId);
-		
+		enter();
+		int slot = slot(obj.id());
+		int service = _parser.getServiceSymbol(serviceId);
+		if(service < 0)
+			throw new IllegalArgumentException("Unknown Service "+serviceId);
+		SmartObject old = _services.get(service);
+		if(old != null)
+			toggle(component(slot(old.id()), serviceId, 3));
+		toggle(component(slot, serviceId, 3));
+		put(_services, service, obj);
+		put(_serviceDifficulty, service, difficulty);
+		for(String ancestorId : _parser.getServiceAncestors(serviceId)){
+			TreeMap<String, SmartObject> children = _servicesByAncestor.get(ancestorId);
+			if(children == null){
+				children = new TreeMap<String, SmartObject>();
+				_servicesByAncestor.put(ancestorId, children);
+			}
+			put(children, serviceId, obj);
+		}
+		set(_serviceImplementations, obj.id(), _parser.getServiceImplById(serviceImplId).bit());
 	}
 	
 	/**
@@ -458,18 +835,9 @@ public class TimeLine {
 	 * @return true if the ServiceImplementation is compatible, false otherwise
 	 */
 	public boolean satisfiesConstraints(int objId, ServiceImplementation si){
-		ArrayList<String> simps = _serviceImplementations.get(objId);
-		if( simps == null)
-			return true;
-		else{
-			for(String constraint : si.constraints()){
-				for(String simpId : simps){
-					if(constraint.equalsIgnoreCase(simpId))
-						return false;
-				}
-			}
-			return true;
-		}
+		enter();
+		BitSet simps = _serviceImplementations.get(objId);
+		return simps == null || !simps.intersects(si.constraintBits());
 	}
 	
 }
@@ -0,0 +1,115 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+
+/**
+ * Undo log shared by a TimeLine and all TimeLines cloned from it. Cloning a TimeLine pushes a
+ * checkpoint on the trail instead of copying the scenario, every change made afterwards is
+ * recorded as an Entry so it can be undone. Checkpoints are strictly nested: using a TimeLine
+ * rolls back all the changes made through TimeLines cloned from it that were not merged back.
+ * Every change and every undo is reported to the ScenarioContext, which keeps the version of the
+ * scenario.
+ */
+class UndoTrail {
+
+	/**
+	 * A single recorded change that knows how to restore the state from before the change.
+	 */
+	interface Entry {
+		public void undo();
+	}
+
+	private ArrayList<Entry> _entries;
+	private ArrayList<TimeLine> _handles;
+	private ArrayList<Integer> _marks;
+	private ScenarioContext _context;
+
+	public UndoTrail(TimeLine root, ScenarioContext context){
+		_context = context;
+		_entries = new ArrayList<Entry>();
+		_handles = new ArrayList<TimeLine>();
+		_marks = new ArrayList<Integer>();
+		_handles.add(root);
+		_marks.add(0);
+	}
+
+	/**
+	 * @param handle
+	 * @param level position of the handle on the trail
+	 * @return true if the handle has not been discarded by a rollback or merge
+	 */
+	public boolean isLive(TimeLine handle, int level){
+		return level < _handles.size() && _handles.get(level) == handle;
+	}
+
+	/**
+	 * Makes the specified handle the current one by undoing all changes made through handles
+	 * cloned from it.
+	 * @param handle
+	 * @param level position of the handle on the trail
+	 */
+	public void activate(TimeLine handle, int level){
+		if(!isLive(handle, level))
+			throw new IllegalStateException("The TimeLine cloned at nesting level "+level+" was discarded: a TimeLine at a lower level"
+					+ " was used or merged since (the deepest live level is now "+(_handles.size() - 1)+"), which rolls back"
+					+ " or hands over all clones above it");
+		rollback(level + 1);
+	}
+
+	/**
+	 * Creates a checkpoint for a new handle on top of the specified (current) handle
+	 * @param parent
+	 * @param parentLevel
+	 * @param child
+	 * @return the level of the new handle
+	 */
+	public int push(TimeLine parent, int parentLevel, TimeLine child){
+		activate(parent, parentLevel);
+		_handles.add(child);
+		_marks.add(_entries.size());
+		return _handles.size() - 1;
+	}
+
+	/**
+	 * Keeps all changes made through the specified handle and hands them over to the handle at the
+	 * target level. All handles above the target level are discarded.
+	 * @param handle
+	 * @param level
+	 * @param targetLevel
+	 */
+	public void commit(TimeLine handle, int level, int targetLevel){
+		activate(handle, level);
+		while(_handles.size() > targetLevel + 1){
+			_handles.remove(_handles.size() - 1);
+			_marks.remove(_marks.size() - 1);
+		}
+		// nothing left to roll back to
+		if(_handles.size() == 1)
+			_entries.clear();
+	}
+
+	/**
+	 * Records a change made through the current handle
+	 * @param entry
+	 */
+	public void record(Entry entry){
+		_context.changed();
+		if(_handles.size() > 1)
+			_entries.add(entry);
+	}
+
+	/**
+	 * Discards all handles from the specified level upwards, undoing their changes in reverse order
+	 * @param level
+	 */
+	private void rollback(int level){
+		while(_handles.size() > level){
+			int mark = _marks.remove(_marks.size() - 1);
+			_handles.remove(_handles.size() - 1);
+			for(int i=_entries.size()-1; i>=mark; i--){
+				_entries.remove(i).undo();
+				_context.changed();
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package scenarioGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of non-negative ints used by DomainSnapshot and
+ * BinaryScenarioExporter: 7 bits per byte, least significant group first, the high bit set on
+ * every byte but the last.
+ */
+final class VarInt {
+
+	private VarInt(){
+	}
+
+	/**
+	 * @param out to append the encoded value to
+	 * @param value
+	 */
+	static void write(ByteArrayOutputStream out, int value){
+		while((value & ~0x7F) != 0){
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * @param in positioned at an encoded value, advanced past it
+	 * @return the decoded value
+	 */
+	static int read(ByteBuffer in){
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,100 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a domain snapshot rebuilds the parsed domain, is only used for the xml file it was
+ * made from and that a corrupt snapshot is rejected.
+ */
+public class DomainSnapshotTest {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private File _xml;
+	private File _snapshot;
+
+	@Before
+	public void copyDomain() throws IOException {
+		_xml = new File(_folder.getRoot(), TestDomain.FILE_NAME);
+		Files.copy(new File(TestDomain.path()).toPath(), _xml.toPath());
+		_snapshot = new File(_folder.getRoot(), TestDomain.FILE_NAME+".snapshot");
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		ProtegeDomainParser parsed = new ProtegeDomainParser();
+		assertTrue(DomainSnapshot.loadDomain(parsed, _xml.getPath(), _snapshot.getPath()));
+		assertTrue(_snapshot.isFile());
+
+		ProtegeDomainParser loaded = new ProtegeDomainParser();
+		assertTrue(DomainSnapshot.read(_snapshot, DomainSnapshot.hashFile(_xml), loaded));
+		assertEquals(parsed.getAllServiceImplementations().size(), loaded.getAllServiceImplementations().size());
+		ScenarioRequest request = new ScenarioRequest("basic", "treat_burn", 2, "Restaurant", 7);
+		assertEquals(new ScenarioGenerator(parsed).generate(request), new ScenarioGenerator(loaded).generate(request));
+	}
+
+	@Test
+	public void staleSnapshotIsRejected() throws Exception {
+		assertTrue(DomainSnapshot.loadDomain(new ProtegeDomainParser(), _xml.getPath(), _snapshot.getPath()));
+		byte[] oldHash = DomainSnapshot.hashFile(_xml);
+		Files.write(_xml.toPath(), "\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+		byte[] newHash = DomainSnapshot.hashFile(_xml);
+		assertFalse(Arrays.equals(oldHash, newHash));
+
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		assertFalse(DomainSnapshot.read(_snapshot, newHash, parser));
+		assertTrue(parser.getAllServiceImplementations().isEmpty());
+
+		// loading the changed xml parses it again and replaces the snapshot
+		assertTrue(DomainSnapshot.loadDomain(new ProtegeDomainParser(), _xml.getPath(), _snapshot.getPath()));
+		assertTrue(DomainSnapshot.read(_snapshot, newHash, new ProtegeDomainParser()));
+	}
+
+	@Test
+	public void corruptLengthIsRejected() throws Exception {
+		byte[] hash = DomainSnapshot.hashFile(_xml);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		VarInt.write(header, hash.length);
+		header.write(hash);
+		// a string table far larger than the file
+		VarInt.write(header, Integer.MAX_VALUE);
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(_snapshot));
+		try {
+			out.writeInt(DomainSnapshot.MAGIC);
+			out.writeInt(DomainSnapshot.VERSION);
+			header.writeTo(out);
+		} finally {
+			out.close();
+		}
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		try {
+			DomainSnapshot.read(_snapshot, hash, parser);
+			fail("read a corrupt snapshot");
+		} catch (IOException e) {
+		}
+		assertTrue(parser.getAllServiceImplementations().isEmpty());
+
+		// loading falls back to the xml
+		parser = new ProtegeDomainParser();
+		assertTrue(DomainSnapshot.loadDomain(parser, _xml.getPath(), _snapshot.getPath()));
+		assertFalse(parser.getAllServiceImplementations().isEmpty());
+	}
+}
@@ -0,0 +1,83 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks recording, pruning and clearing of nogoods, and that the SmartObjectSelector records
+ * repeatable failures and prunes them when generating a scenario.
+ */
+public class NogoodCacheTest {
+
+	@Test
+	public void recordAndHit(){
+		NogoodCache cache = new NogoodCache();
+		assertFalse(cache.contains("fire", 2, "home", 42));
+		long mark = cache.startSearch();
+		cache.startSearch();
+		cache.startSearch();
+		cache.add("fire", 2, "home", 42, mark);
+		assertEquals(1, cache.size());
+
+		assertTrue(cache.contains("fire", 2, "home", 42));
+		assertEquals(2, cache.lookups());
+		assertEquals(1, cache.hits());
+		assertEquals(3, cache.savedSearches());
+	}
+
+	@Test
+	public void keyCoversProblemDifficultySettingAndSignature(){
+		NogoodCache cache = new NogoodCache();
+		cache.add("fire", 2, "home", 42, cache.startSearch());
+		assertFalse(cache.contains("water", 2, "home", 42));
+		assertFalse(cache.contains("fire", 1, "home", 42));
+		assertFalse(cache.contains("fire", 2, "park", 42));
+		assertFalse(cache.contains("fire", 2, null, 42));
+		assertFalse(cache.contains("fire", 2, "home", 43));
+		assertEquals(0, cache.hits());
+	}
+
+	@Test
+	public void clear(){
+		NogoodCache cache = new NogoodCache();
+		cache.add("fire", 2, "home", 42, cache.startSearch());
+		assertTrue(cache.contains("fire", 2, "home", 42));
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertFalse(cache.contains("fire", 2, "home", 42));
+		// the counters are kept
+		assertEquals(2, cache.lookups());
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	public void generationPrunesRepeatedFailure(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		assertTrue(parser.parseDomain(TestDomain.path()));
+		// a request whose generation searches a failed Service again from the same world state
+		TimeLine timeLine = new ScenarioGenerator(parser).generateTimeLine(new ScenarioRequest("basic", "ensure_ABC", 3, "Park", 5));
+		NogoodCache cache = timeLine.context().nogoods();
+		assertTrue(cache.size() > 0);
+		assertTrue(cache.hits() > 0);
+		assertTrue(cache.savedSearches() >= cache.hits());
+	}
+
+	@Test
+	public void selectorRecordsRepeatableFailure(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		assertTrue(parser.parseDomain(TestDomain.path()));
+		TimeLine timeLine = new TimeLine(parser, new ScenarioContext(1));
+		SmartObjectSelector selector = new SmartObjectSelector(timeLine, parser);
+		NogoodCache cache = timeLine.context().nogoods();
+		String setting = parser.getSettingByName("Home");
+		// no implementation offers the Service, so the failed search tried every alternative
+		assertNull(selector.fillService(timeLine, "no_such_service", 1, setting));
+		assertEquals(1, cache.size());
+		assertNull(selector.fillService(timeLine, "no_such_service", 1, setting));
+		assertEquals(1, cache.hits());
+	}
+}
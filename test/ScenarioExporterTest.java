@@ -0,0 +1,380 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the JSON Lines and binary exporters write records that decode back to the contents
+ * of the exported TimeLines. Every format is decoded into the same list of lines, one per record,
+ * that a recording exporter builds directly from the TimeLine.
+ */
+public class ScenarioExporterTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static ScenarioGenerator _generator;
+	private static ArrayList<ScenarioRequest> _requests;
+	private static ArrayList<TimeLine> _timeLines;
+
+	@BeforeClass
+	public static void generate(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		assertTrue(parser.parseDomain(TestDomain.path()));
+		_generator = new ScenarioGenerator(parser);
+		_requests = new ArrayList<ScenarioRequest>();
+		_requests.add(new ScenarioRequest("basic", "calm_person", 2, "Park", 3));
+		_requests.add(new ScenarioRequest("basic", "treat_burn", 1, "Park", -3));
+		_requests.add(new ScenarioRequest("basic", "ensure_ABC", 2, "Home", Long.MAX_VALUE));
+		_timeLines = new ArrayList<TimeLine>();
+		for(ScenarioRequest request : _requests){
+			_timeLines.add(_generator.generateTimeLine(request));
+		}
+	}
+
+	@Test
+	public void jsonLines() throws IOException {
+		StringWriter out = new StringWriter();
+		export(new JsonLinesExporter(out));
+		BufferedReader in = new BufferedReader(new StringReader(out.toString()));
+		ArrayList<List<String>> decoded = new ArrayList<List<String>>();
+		String line;
+		while((line = in.readLine()) != null){
+			decoded.add(decodeJson(line));
+		}
+		assertEquals(expected(), decoded);
+	}
+
+	@Test
+	public void binary() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		export(new BinaryScenarioExporter(out));
+		ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+		assertEquals(BinaryScenarioExporter.MAGIC, in.getInt());
+		assertEquals(BinaryScenarioExporter.VERSION, in.getInt());
+		ArrayList<List<String>> decoded = new ArrayList<List<String>>();
+		while(in.hasRemaining()){
+			int length = VarInt.read(in);
+			int end = in.position() + length;
+			decoded.add(decodeBinary(in));
+			assertEquals(end, in.position());
+		}
+		assertEquals(expected(), decoded);
+	}
+
+	@Test
+	public void recordsAreNotEmpty() throws IOException {
+		for(List<String> record : expected()){
+			assertTrue(contains(record, "planning"));
+			assertTrue(contains(record, "story"));
+			assertTrue(contains(record, "service"));
+		}
+	}
+
+	/**
+	 * Helper function that exports all generated scenarios and closes the exporter
+	 * @param exporter
+	 * @throws IOException
+	 */
+	private static void export(ScenarioExporter exporter) throws IOException {
+		for(int i=0; i<_requests.size(); i++){
+			_generator.export(_requests.get(i), _timeLines.get(i), exporter);
+		}
+		exporter.close();
+	}
+
+	/**
+	 * @return the lines of all scenarios as handed over by the TimeLines
+	 * @throws IOException
+	 */
+	private static ArrayList<List<String>> expected() throws IOException {
+		RecordingExporter recorder = new RecordingExporter();
+		export(recorder);
+		return recorder._records;
+	}
+
+	private static boolean contains(List<String> record, String kind){
+		for(String line : record){
+			if(line.startsWith(kind+" "))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the lines of every scenario from the calls of the TimeLine
+	 */
+	private static class RecordingExporter implements ScenarioExporter {
+
+		private ArrayList<List<String>> _records = new ArrayList<List<String>>();
+		private ArrayList<String> _record;
+
+		public void beginScenario(ScenarioRequest request){
+			_record = new ArrayList<String>();
+			_record.add("request "+request.template()+" "+request.criticalTask()+" "+request.setting()+" "+request.difficulty()+" "+request.seed());
+		}
+
+		public void planningTask(Task task, List<SmartObject> objects, List<Service> services){
+			_record.add("planning "+task.id()+" "+task.taskDesc().id()+" "+task.taskDesc().name()+used(objects, services));
+		}
+
+		public void storyAction(AtomTask action, Agent actor, Service goal, List<SmartObject> objects, List<Service> services){
+			_record.add("story "+action.id()+" "+action.actionDesc().id()+" "+action.actionDesc().name()+" "+object(actor)+" "+(goal != null ? goal.id() : "-")+used(objects, services));
+		}
+
+		public void initObject(SmartObject object){
+			_record.add("init "+object(object));
+		}
+
+		public void dynamicObject(SmartObject object){
+			_record.add("dynamic "+object(object));
+		}
+
+		public void offeredService(Service service, SmartObject object, int difficulty){
+			_record.add("service "+service.id()+" "+object(object)+" "+difficulty);
+		}
+
+		public void endScenario(){
+			_records.add(_record);
+		}
+
+		public void close(){
+		}
+
+		private static String used(List<SmartObject> objects, List<Service> services){
+			StringBuilder s = new StringBuilder();
+			for(int i=0; i<objects.size(); i++){
+				s.append(" [").append(object(objects.get(i))).append(" ").append(services.get(i).id()).append("]");
+			}
+			return s.toString();
+		}
+
+		private static String object(SmartObject object){
+			if(object == null)
+				return "-";
+			return object.id()+":"+object.objDesc().id()+":"+object.objDesc().name();
+		}
+	}
+
+	/**
+	 * Helper function that decodes a record of the binary format into lines
+	 * @param in positioned at the start of the record, is left at its end
+	 * @return lines of the record
+	 */
+	private static List<String> decodeBinary(ByteBuffer in){
+		ArrayList<String> record = new ArrayList<String>();
+		String template = readString(in);
+		String task = readString(in);
+		String setting = readString(in);
+		int difficulty = VarInt.read(in);
+		record.add("request "+template+" "+task+" "+setting+" "+difficulty+" "+in.getLong());
+		int tag;
+		while((tag = VarInt.read(in)) != BinaryScenarioExporter.END){
+			switch(tag){
+			case BinaryScenarioExporter.PLANNING:
+				record.add("planning "+VarInt.read(in)+" "+readString(in)+" "+readString(in)+readUsed(in));
+				break;
+			case BinaryScenarioExporter.STORY:
+				String action = VarInt.read(in)+" "+readString(in)+" "+readString(in)+" "+readObject(in);
+				String goal = readString(in);
+				record.add("story "+action+" "+(goal.isEmpty() ? "-" : goal)+readUsed(in));
+				break;
+			case BinaryScenarioExporter.INIT_OBJECT:
+				record.add("init "+readObject(in));
+				break;
+			case BinaryScenarioExporter.DYNAMIC_OBJECT:
+				record.add("dynamic "+readObject(in));
+				break;
+			case BinaryScenarioExporter.SERVICE:
+				record.add("service "+readString(in)+" "+readObject(in)+" "+VarInt.read(in));
+				break;
+			default:
+				throw new IllegalStateException("Unknown tag "+tag);
+			}
+		}
+		return record;
+	}
+
+	private static String readUsed(ByteBuffer in){
+		StringBuilder s = new StringBuilder();
+		int count = VarInt.read(in);
+		for(int i=0; i<count; i++){
+			s.append(" [").append(readObject(in)).append(" ").append(readString(in)).append("]");
+		}
+		return s.toString();
+	}
+
+	private static String readObject(ByteBuffer in){
+		int id = VarInt.read(in);
+		if(id == 0)
+			return "-";
+		return (id - 1)+":"+readString(in)+":"+readString(in);
+	}
+
+	private static String readString(ByteBuffer in){
+		byte[] bytes = new byte[VarInt.read(in)];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Helper function that decodes a line of the JSON Lines format into lines
+	 * @param line
+	 * @return lines of the record
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> decodeJson(String line){
+		Json json = new Json(line);
+		Map<String, Object> scenario = (Map<String, Object>) json.value();
+		assertFalse(json.hasRemaining());
+		ArrayList<String> record = new ArrayList<String>();
+		record.add("request "+scenario.get("template")+" "+scenario.get("criticalTask")+" "+scenario.get("setting")+" "+scenario.get("difficulty")+" "+scenario.get("seed"));
+		for(Object o : (List<Object>) scenario.get("planning")){
+			Map<String, Object> task = (Map<String, Object>) o;
+			record.add("planning "+task.get("id")+" "+task.get("task")+" "+task.get("name")+jsonUsed(task));
+		}
+		for(Object o : (List<Object>) scenario.get("story")){
+			Map<String, Object> action = (Map<String, Object>) o;
+			Map<String, Object> goal = (Map<String, Object>) action.get("goal");
+			record.add("story "+action.get("id")+" "+action.get("action")+" "+action.get("name")+" "+jsonObject(action.get("actor"))+" "+(goal != null ? goal.get("service") : "-")+jsonUsed(action));
+		}
+		for(Object o : (List<Object>) scenario.get("initObjects")){
+			record.add("init "+jsonObject(o));
+		}
+		for(Object o : (List<Object>) scenario.get("dynamicObjects")){
+			record.add("dynamic "+jsonObject(o));
+		}
+		for(Object o : (List<Object>) scenario.get("services")){
+			Map<String, Object> service = (Map<String, Object>) o;
+			record.add("service "+((Map<String, Object>) service.get("service")).get("service")+" "+jsonObject(service.get("object"))+" "+service.get("difficulty"));
+		}
+		return record;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String jsonUsed(Map<String, Object> task){
+		StringBuilder s = new StringBuilder();
+		for(Object o : (List<Object>) task.get("objects")){
+			Map<String, Object> used = (Map<String, Object>) o;
+			s.append(" [").append(jsonObject(used.get("object"))).append(" ").append(((Map<String, Object>) used.get("service")).get("service")).append("]");
+		}
+		return s.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String jsonObject(Object o){
+		if(o == null)
+			return "-";
+		Map<String, Object> object = (Map<String, Object>) o;
+		return object.get("id")+":"+object.get("object")+":"+object.get("name");
+	}
+
+	/**
+	 * Minimal JSON reader for the output of the JsonLinesExporter: objects become maps, arrays
+	 * lists, numbers longs
+	 */
+	private static class Json {
+
+		private String _s;
+		private int _pos;
+
+		Json(String s){
+			_s = s;
+		}
+
+		boolean hasRemaining(){
+			return _pos < _s.length();
+		}
+
+		Object value(){
+			char c = _s.charAt(_pos);
+			if(c == '{'){
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				_pos++;
+				if(!skip('}')){
+					do {
+						String key = string();
+						expect(':');
+						map.put(key, value());
+					} while(skip(','));
+					expect('}');
+				}
+				return map;
+			}
+			if(c == '['){
+				List<Object> list = new ArrayList<Object>();
+				_pos++;
+				if(!skip(']')){
+					do {
+						list.add(value());
+					} while(skip(','));
+					expect(']');
+				}
+				return list;
+			}
+			if(c == '"')
+				return string();
+			if(_s.startsWith("null", _pos)){
+				_pos += 4;
+				return null;
+			}
+			int start = _pos;
+			while(_pos < _s.length() && (_s.charAt(_pos) == '-' || Character.isDigit(_s.charAt(_pos)))){
+				_pos++;
+			}
+			return Long.valueOf(_s.substring(start, _pos));
+		}
+
+		private String string(){
+			expect('"');
+			StringBuilder s = new StringBuilder();
+			char c;
+			while((c = _s.charAt(_pos++)) != '"'){
+				if(c == '\\'){
+					c = _s.charAt(_pos++);
+					switch(c){
+					case 'n': c = '\n'; break;
+					case 'r': c = '\r'; break;
+					case 't': c = '\t'; break;
+					case 'u':
+						c = (char) Integer.parseInt(_s.substring(_pos, _pos + 4), 16);
+						_pos += 4;
+						break;
+					default:
+						// quote and backslash stand for themselves
+					}
+				}
+				s.append(c);
+			}
+			return s.toString();
+		}
+
+		private boolean skip(char c){
+			if(_pos < _s.length() && _s.charAt(_pos) == c){
+				_pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c){
+			if(!skip(c))
+				throw new IllegalStateException("Expected "+c+" at "+_pos+" in "+_s);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that a request exceeding its search budget or deadline stops with a
+ * ScenarioLimitException that holds the request and the partial scenario.
+ */
+public class ScenarioLimitExceptionTest {
+
+	private static ProtegeDomainParser _parser;
+	private static ProtegeDomainParser _slowParser;
+
+	@BeforeClass
+	public static void parseDomain(){
+		_parser = new ProtegeDomainParser();
+		assertTrue(_parser.parseDomain(TestDomain.path()));
+		// makes every decomposition take longer than the deadline of 1 millisecond
+		_slowParser = new ProtegeDomainParser(){
+			@Override
+			public List<List<DecompositionSchema>> getDecompositionsByScore(String taskId, int difficulty){
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getDecompositionsByScore(taskId, difficulty);
+			}
+		};
+		assertTrue(_slowParser.parseDomain(TestDomain.path()));
+	}
+
+	@Test
+	public void budget(){
+		ScenarioRequest request = new ScenarioRequest("basic", "treat_burn", 2, "Laboratorium", 1, 0, 5);
+		ScenarioLimitException e = generate(_parser, request);
+		assertEquals(ScenarioLimitException.Limit.BUDGET, e.limit());
+		assertEquals(6, e.steps());
+		assertPartial(request, e);
+	}
+
+	@Test
+	public void deadline(){
+		ScenarioRequest request = new ScenarioRequest("basic", "treat_burn", 2, "Laboratorium", 1, 1, 0);
+		ScenarioLimitException e = generate(_slowParser, request);
+		assertEquals(ScenarioLimitException.Limit.DEADLINE, e.limit());
+		assertPartial(request, e);
+	}
+
+	@Test
+	public void withinLimits(){
+		ScenarioRequest request = new ScenarioRequest("basic", "treat_burn", 2, "Laboratorium", 1, 60000, 100000);
+		TimeLine timeLine = new ScenarioGenerator(_parser).generateTimeLine(request);
+		assertTrue(timeLine.context().steps() <= 100000);
+	}
+
+	/**
+	 * Helper function that generates a scenario that must exceed a limit
+	 * @param parser
+	 * @param request
+	 * @return the exception thrown by the generator
+	 */
+	private static ScenarioLimitException generate(ProtegeDomainParser parser, ScenarioRequest request){
+		try {
+			new ScenarioGenerator(parser).generateTimeLine(request);
+		} catch (ScenarioLimitException e) {
+			return e;
+		}
+		fail("limit of the request was not exceeded");
+		return null;
+	}
+
+	private static void assertPartial(ScenarioRequest request, ScenarioLimitException e){
+		assertSame(request, e.request());
+		TimeLine partial = e.partialScenario();
+		assertNotNull(partial);
+		// the partial scenario can still be read and holds at least the tasks of the template
+		assertTrue(partial.printScenario().startsWith("Planning: \r\n"));
+		assertFalse(partial.printScenario().startsWith("Planning: \r\n\r\n"));
+	}
+}
@@ -0,0 +1,81 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the server answers every request with exactly one line, that requests which are
+ * malformed or name unknown domain concepts are answered with an error and that they do not stop
+ * the request loop.
+ */
+public class ScenarioServerTest {
+
+	private static final String[] INVALID = {
+		"garbage",
+		"basic\tcalm_person\t2",
+		"basic\tcalm_person\ttwo\tPark",
+		"basic\tcalm_person\t2\tPark\tnot_a_seed",
+		"basic\tcalm_person\t2\tPark\t1\textra",
+		"basic\tno_such_task\t2\tPark\t1",
+		"no_such_template\tcalm_person\t2\tPark\t1",
+		"basic\tcalm_person\t2\tno_such_setting\t1",
+	};
+
+	private static ScenarioGenerator _generator;
+
+	@BeforeClass
+	public static void parseDomain(){
+		ProtegeDomainParser parser = new ProtegeDomainParser();
+		assertTrue(parser.parseDomain(TestDomain.path()));
+		_generator = new ScenarioGenerator(parser);
+	}
+
+	@Test
+	public void jsonErrorsAreSingleLines() throws IOException {
+		String[] responses = run(true);
+		assertEquals(INVALID.length + 1, responses.length);
+		for(int i=0; i<INVALID.length; i++){
+			assertTrue(INVALID[i]+" answered with "+responses[i], responses[i].startsWith("{\"error\":\"") && responses[i].endsWith("}"));
+			// rejected as an invalid request, not by an unexpected exception
+			assertFalse(responses[i].startsWith("{\"error\":\"java."));
+		}
+		assertTrue(responses[INVALID.length].startsWith("{\"template\":\"basic\""));
+	}
+
+	@Test
+	public void textErrorsAreSingleLines() throws IOException {
+		String[] responses = run(false);
+		for(int i=0; i<INVALID.length; i++){
+			assertTrue(INVALID[i]+" answered with "+responses[i], responses[i].startsWith("Error: "));
+		}
+		assertTrue(responses[INVALID.length].startsWith("Task to train: calm_person"));
+	}
+
+	/**
+	 * Helper function that sends all invalid requests followed by a valid one to a server
+	 * @param json true for the jsonl format, false for the text format
+	 * @return the lines of all responses
+	 * @throws IOException
+	 */
+	private static String[] run(boolean json) throws IOException {
+		StringBuilder requests = new StringBuilder();
+		for(String request : INVALID){
+			requests.append(request).append('\n');
+		}
+		requests.append("basic\tcalm_person\t2\tPark\t1\n");
+		requests.append("quit\n");
+		requests.append("basic\tcalm_person\t2\tPark\t2\n");
+		StringWriter out = new StringWriter();
+		new ScenarioServer(_generator, new BufferedReader(new StringReader(requests.toString())), out, json).run();
+		return out.toString().split("\r?\n");
+	}
+}
@@ -0,0 +1,103 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the streaming parser leaves the parser in the same state as the DOM based parser:
+ * it hands over the same instances, builds the same descriptions and so generates the same
+ * scenarios.
+ */
+public class StreamingProtegeDomainParserTest {
+
+	private static ProtegeDomainParser _dom;
+	private static ProtegeDomainParser _stax;
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void parseDomain(){
+		_dom = new ProtegeDomainParser();
+		assertTrue(_dom.parseDomain(TestDomain.path()));
+		_stax = new StreamingProtegeDomainParser();
+		assertTrue(_stax.parseDomain(TestDomain.path()));
+	}
+
+	@Test
+	public void sameInstances() throws Exception {
+		assertArrayEquals(record(new ProtegeDomainParser()), record(new StreamingProtegeDomainParser()));
+	}
+
+	@Test
+	public void sameServiceImplementations(){
+		ArrayList<ServiceImplementation> dom = _dom.getAllServiceImplementations();
+		ArrayList<ServiceImplementation> stax = _stax.getAllServiceImplementations();
+		assertEquals(dom.size(), stax.size());
+		for(int i=0; i<dom.size(); i++){
+			ServiceImplementation expected = dom.get(i);
+			ServiceImplementation actual = stax.get(i);
+			assertEquals(expected.id(), actual.id());
+			assertEquals(expected.service(), actual.service());
+			assertEquals(expected.objectId(), actual.objectId());
+			assertEquals(expected.actionIds(), actual.actionIds());
+			assertEquals(expected.actorTypes(), actual.actorTypes());
+			assertEquals(expected.constraints(), actual.constraints());
+			assertEquals(expected.minDifficulty(), actual.minDifficulty());
+			assertEquals(expected.maxDifficulty(), actual.maxDifficulty());
+			assertEquals(expected.bit(), actual.bit());
+			assertEquals(_dom.getServiceAncestors(expected.service()), _stax.getServiceAncestors(actual.service()));
+		}
+	}
+
+	@Test
+	public void sameLookups(){
+		for(String setting : new String[]{"Park", "Home", "Restaurant", "Laboratorium"}){
+			assertNotNull(_dom.getSettingByName(setting));
+			assertEquals(_dom.getSettingByName(setting), _stax.getSettingByName(setting));
+		}
+		for(String task : new String[]{"calm_person", "treat_burn", "ensure_ABC"}){
+			assertNotNull(_dom.getTaskIdByName(task));
+			assertEquals(_dom.getTaskIdByName(task), _stax.getTaskIdByName(task));
+		}
+		assertEquals(_dom.getScenarioTemplateByName("basic").size(), _stax.getScenarioTemplateByName("basic").size());
+	}
+
+	@Test
+	public void sameScenarios(){
+		ScenarioGenerator dom = new ScenarioGenerator(_dom);
+		ScenarioGenerator stax = new ScenarioGenerator(_stax);
+		String[] criticalTasks = {"calm_person", "treat_burn", "ensure_ABC"};
+		String[] settings = {"Park", "Restaurant", "Home"};
+		for(int i=0; i<criticalTasks.length; i++){
+			ScenarioRequest request = new ScenarioRequest("basic", criticalTasks[i], 2, settings[i], 11+i);
+			assertEquals(dom.generate(request), stax.generate(request));
+		}
+	}
+
+	/**
+	 * Helper function that parses the domain while recording all instances handed to the parser
+	 * @param parser empty parser
+	 * @return the recorded instances as written to a snapshot
+	 * @throws Exception
+	 */
+	private byte[] record(ProtegeDomainParser parser) throws Exception {
+		DomainSnapshot recorder = new DomainSnapshot();
+		parser.setSnapshot(recorder);
+		assertTrue(parser.parseDomain(TestDomain.path()));
+		File file = _folder.newFile();
+		recorder.write(file, new byte[0]);
+		return Files.readAllBytes(file.toPath());
+	}
+}
@@ -0,0 +1,36 @@
+package scenarioGenerator;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+/**
+ * Locates the domain knowledge file of the project for the tests, so they do not depend on the
+ * directory they are run from.
+ */
+final class TestDomain {
+
+	static final String FILE_NAME = "SO_ontology.xml";
+
+	private TestDomain(){
+	}
+
+	/**
+	 * @return path of SO_ontology.xml in the project base directory, given by the system property
+	 * basedir or otherwise found above the directory of the compiled tests
+	 */
+	static String path(){
+		String basedir = System.getProperty("basedir");
+		if(basedir != null && new File(basedir, FILE_NAME).isFile())
+			return new File(basedir, FILE_NAME).getPath();
+		try {
+			File dir = new File(TestDomain.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			for(; dir != null; dir = dir.getParentFile()){
+				if(new File(dir, FILE_NAME).isFile())
+					return new File(dir, FILE_NAME).getPath();
+			}
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Cannot locate the compiled tests", e);
+		}
+		throw new IllegalStateException("Cannot find "+FILE_NAME+" in the project directory");
+	}
+}
@@ -0,0 +1,99 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that the signature of the world state is restored when changes are undone and that it
+ * identifies objects by description and position instead of id.
+ */
+public class TimeLineSignatureTest {
+
+	private static ProtegeDomainParser _parser;
+	private static ArrayList<ServiceImplementation> _implementations;
+
+	@BeforeClass
+	public static void parseDomain(){
+		_parser = new ProtegeDomainParser();
+		assertTrue(_parser.parseDomain(TestDomain.path()));
+		_implementations = new ArrayList<ServiceImplementation>();
+		ArrayList<String> descriptions = new ArrayList<String>();
+		for(ServiceImplementation si : _parser.getAllServiceImplementations()){
+			if(_parser.getSmartObjById(si.objectId()) instanceof SmartObjectDescription && !descriptions.contains(si.objectId())){
+				descriptions.add(si.objectId());
+				_implementations.add(si);
+			}
+		}
+		assertTrue(_implementations.size() >= 2);
+	}
+
+	@Test
+	public void toggleIsUndone(){
+		TimeLine root = new TimeLine(_parser, new ScenarioContext(1));
+		offer(root, 0);
+		long before = root.signature();
+		TimeLine clone = root.clone();
+		offer(clone, 1);
+		assertNotEquals(before, clone.signature());
+		assertEquals(before, root.signature());
+
+		// merged changes are kept
+		clone = root.clone();
+		offer(clone, 1);
+		long after = clone.signature();
+		root.merge(clone);
+		assertEquals(after, root.signature());
+	}
+
+	@Test
+	public void independentOfObjectIds(){
+		TimeLine first = new TimeLine(_parser, new ScenarioContext(1));
+		TimeLine second = new TimeLine(_parser, new ScenarioContext(1));
+		// hand out ids in the second scenario for objects that are discarded
+		TimeLine discarded = second.clone();
+		offer(discarded, 1);
+		offer(discarded, 0);
+		assertEquals(0, second.signature());
+
+		offer(first, 0);
+		offer(first, 1);
+		offer(second, 0);
+		offer(second, 1);
+		assertEquals(first.signature(), second.signature());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void serviceObjectMustBeInWorld(){
+		TimeLine timeLine = new TimeLine(_parser, new ScenarioContext(1));
+		ServiceImplementation si = _implementations.get(0);
+		SmartObject so = timeLine.createObject((SmartObjectDescription) _parser.getSmartObjById(si.objectId()));
+		timeLine.addServiceObject(si.service(), si.id(), so, si.minDifficulty());
+	}
+
+	@Test
+	public void dependsOnDescriptions(){
+		TimeLine first = new TimeLine(_parser, new ScenarioContext(1));
+		TimeLine second = new TimeLine(_parser, new ScenarioContext(1));
+		offer(first, 0);
+		offer(second, 1);
+		assertNotEquals(first.signature(), second.signature());
+	}
+
+	/**
+	 * Helper function that adds a new object offering the Service of one of the implementations
+	 * @param timeLine
+	 * @param index of the implementation
+	 */
+	private static void offer(TimeLine timeLine, int index){
+		ServiceImplementation si = _implementations.get(index);
+		SmartObject so = timeLine.createObject((SmartObjectDescription) _parser.getSmartObjById(si.objectId()));
+		timeLine.addNewObject(so, true);
+		timeLine.addServiceObject(si.service(), si.id(), so, si.minDifficulty());
+	}
+}
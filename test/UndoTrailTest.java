@@ -0,0 +1,123 @@
+package scenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks the checkpoints of the UndoTrail through the TimeLines that use it: changes of merged
+ * clones are kept by the TimeLine they were merged into and undone together with it, changes of
+ * clones that were not merged are undone as soon as an older TimeLine is used again.
+ */
+public class UndoTrailTest {
+
+	private static ProtegeDomainParser _parser;
+	private static ArrayList<SmartObjectDescription> _descriptions;
+
+	@BeforeClass
+	public static void parseDomain(){
+		_parser = new ProtegeDomainParser();
+		assertTrue(_parser.parseDomain(TestDomain.path()));
+		_descriptions = new ArrayList<SmartObjectDescription>();
+		for(ServiceImplementation si : _parser.getAllServiceImplementations()){
+			AbstractSmartObjectDescription desc = _parser.getSmartObjById(si.objectId());
+			if(desc instanceof SmartObjectDescription && !_descriptions.contains(desc))
+				_descriptions.add((SmartObjectDescription) desc);
+		}
+		assertTrue(_descriptions.size() >= 3);
+	}
+
+	@Test
+	public void nestedCloneMergeRollback(){
+		TimeLine root = new TimeLine(_parser, new ScenarioContext(1));
+		long empty = root.signature();
+		TimeLine outer = root.clone();
+		SmartObject first = add(outer, 0);
+		TimeLine inner = outer.clone();
+		SmartObject second = add(inner, 1);
+		outer.merge(inner);
+		assertTrue(outer.containsObject(first.id()));
+		assertTrue(outer.containsObject(second.id()));
+
+		// a clone of the merged TimeLine is rolled back on its own
+		TimeLine sibling = outer.clone();
+		SmartObject third = add(sibling, 2);
+		assertTrue(outer.containsObject(second.id()));
+		assertFalse(outer.containsObject(third.id()));
+
+		// using the root undoes the outer clone including the changes merged into it
+		assertFalse(root.containsObject(first.id()));
+		assertFalse(root.containsObject(second.id()));
+		assertEquals(empty, root.signature());
+		assertDiscarded(outer);
+		assertDiscarded(inner);
+	}
+
+	@Test
+	public void rollbackUnmergedSiblings(){
+		TimeLine root = new TimeLine(_parser, new ScenarioContext(1));
+		SmartObject kept = add(root, 0);
+		long before = root.signature();
+		TimeLine first = root.clone();
+		SmartObject discarded = add(first, 1);
+		TimeLine second = root.clone();
+		assertFalse(second.containsObject(discarded.id()));
+		assertEquals(before, second.signature());
+		assertDiscarded(first);
+
+		SmartObject merged = add(second, 2);
+		TimeLine third = root.clone();
+		assertFalse(third.containsObject(merged.id()));
+		assertDiscarded(second);
+		add(third, 1);
+		root.merge(third);
+		assertTrue(root.containsObject(kept.id()));
+		assertFalse(root.containsObject(discarded.id()));
+		assertFalse(root.containsObject(merged.id()));
+	}
+
+	@Test
+	public void mergeRequiresClone(){
+		TimeLine root = new TimeLine(_parser, new ScenarioContext(1));
+		TimeLine first = root.clone();
+		TimeLine other = new TimeLine(_parser, root.context());
+		try {
+			first.merge(root);
+			fail("merged the TimeLine it was cloned from");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			root.merge(other);
+			fail("merged a TimeLine of another trail");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Helper function that adds a new object of one of the descriptions to the TimeLine
+	 * @param timeLine
+	 * @param desc index of the description
+	 * @return the object
+	 */
+	private static SmartObject add(TimeLine timeLine, int desc){
+		SmartObject so = timeLine.createObject(_descriptions.get(desc));
+		timeLine.addNewObject(so, false);
+		assertTrue(timeLine.containsObject(so.id()));
+		return so;
+	}
+
+	private static void assertDiscarded(TimeLine timeLine){
+		try {
+			timeLine.containsObject(0);
+			fail("TimeLine was not discarded");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("nesting level"));
+		}
+	}
+}